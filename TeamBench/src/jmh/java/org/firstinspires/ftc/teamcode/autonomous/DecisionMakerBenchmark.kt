@@ -0,0 +1,50 @@
+package org.firstinspires.ftc.teamcode.autonomous
+
+import org.firstinspires.ftc.teamcode.io.Waiter
+import org.firstinspires.ftc.teamcode.telemetry.StubTelemetrySink
+import org.firstinspires.ftc.teamcode.telemetry.Telemetry
+import org.firstinspires.ftc.teamcode.util.StepClock
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.Random
+
+/**
+ * Measures one decision of `DecisionMaker.nextTask` as the number of tasks grows, with synthetic
+ * tasks of random priorities, reliabilities and durations, and the configured planning.
+ *
+ * The clock does not move, so every decision is made with the whole period left.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+@State(Scope.Thread)
+open class DecisionMakerBenchmark {
+
+    /**
+     * The number of tasks to decide between.
+     */
+    @Param("4", "8", "12", "16", "20")
+    @JvmField var tasks = 0
+
+    private lateinit var decider: DecisionMaker<Unit>
+
+    @Setup
+    fun setUp() {
+        val random = Random(4410)
+        val entries = List(tasks) {
+            TaskEntry<Unit>("task$it", TaskMetadata(random.nextDouble(), random.nextDouble(),
+                    1 + random.nextDouble() * 9)) { true }
+        }
+        val clock = StepClock()
+        decider = DecisionMaker(entries, Waiter(clock) { false }, Telemetry(StubTelemetrySink(), clock), {},
+                clock = clock)
+    }
+
+    @Benchmark
+    open fun nextTask(): String? = decider.nextTask()
+}
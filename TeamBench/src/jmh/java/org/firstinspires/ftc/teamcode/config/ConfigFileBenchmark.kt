@@ -0,0 +1,52 @@
+package org.firstinspires.ftc.teamcode.config
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Measures loading a configuration file, as every ConfigUser does when instantiated, and parsing
+ * typed values from it, with the largest file of the source tree.
+ *
+ * The file is read from the page cache after the first iteration, as it would be on the robot
+ * after the first OpMode.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+@State(Scope.Thread)
+open class ConfigFileBenchmark {
+
+    private companion object {
+        const val FILENAME = "Hardware/config.properties"
+    }
+
+    private lateinit var file: ConfigFile
+
+    @Setup
+    fun setUp() {
+        file = ConfigFile(FILENAME)
+    }
+
+    @Benchmark
+    open fun load(): ConfigFile = ConfigFile(FILENAME)
+
+    @Benchmark
+    open fun parse(): Double = parse(file)
+
+    @Benchmark
+    open fun loadAndParse(): Double = parse(ConfigFile(FILENAME))
+
+    // Reads values of every type, like the Config classes do
+    private fun parse(file: ConfigFile): Double {
+        var sum = file.getDouble("WaitPollInterval") + file.getDouble("WaitMaxPollInterval") +
+                file.getDouble("WaitBackoffFactor") + file.getDouble("TelemetryMaxUpdateRate")
+        sum += file.getInteger("FlightRecorderCapacity") + file.getInteger("SnapshotMaxAge")
+        if (file.getBoolean("UseWriteCache")) sum += 1
+        sum += file["LogLevel"].length
+        return sum
+    }
+}
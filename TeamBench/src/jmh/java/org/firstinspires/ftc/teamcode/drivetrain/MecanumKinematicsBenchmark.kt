@@ -0,0 +1,52 @@
+package org.firstinspires.ftc.teamcode.drivetrain
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.Random
+
+/**
+ * Measures the kinematics of `Drivetrain.actuate`, which runs in every TeleOp loop: the motor
+ * powers for a movement and a turn, from gamepad input.
+ *
+ * Inputs come from a table of random stick positions, so that the JIT cannot fold them away and
+ * the branches of scaling and clipping are taken as in driving.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+@State(Scope.Thread)
+open class MecanumKinematicsBenchmark {
+
+    private companion object {
+        // A power of two, so that the index wraps with a mask
+        const val INPUTS = 1024
+    }
+
+    private val x = DoubleArray(INPUTS)
+    private val y = DoubleArray(INPUTS)
+    private val turn = DoubleArray(INPUTS)
+    private val powers = DoubleArray(MecanumKinematics.MOTOR_COUNT)
+    private var index = 0
+
+    @Setup
+    fun setUp() {
+        val random = Random(4410)
+        for (i in 0 until INPUTS) {
+            x[i] = random.nextDouble() * 2 - 1
+            y[i] = random.nextDouble() * 2 - 1
+            // The sticks rest at zero some of the time
+            turn[i] = if (random.nextBoolean()) 0.0 else random.nextDouble() * 2 - 1
+        }
+    }
+
+    @Benchmark
+    open fun actuationPowers(): DoubleArray {
+        val i = index++ and (INPUTS - 1)
+        MecanumKinematics.actuationPowers(x[i], y[i], 0.8, turn[i], powers)
+        return powers
+    }
+}
@@ -0,0 +1,68 @@
+package org.firstinspires.ftc.teamcode.telemetry
+
+import java.util.ArrayDeque
+
+/**
+ * A TelemetrySink for benchmarks that sends nothing, but composes every transmission into a
+ * reused buffer like the SDK does, so that formatting values still costs what it does on the robot.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+class StubTelemetrySink : TelemetrySink {
+
+    private class StubLine(val caption: String, var current: Any?, val producer: (() -> Any)?) : TelemetrySink.Line {
+        override fun setValue(value: Any) {
+            current = value
+        }
+    }
+
+    override var isAutoClear = true
+    override var msTransmissionInterval = 250
+    override var logCapacity = 9
+
+    private val retained = ArrayList<StubLine>()
+    private val cleared = ArrayList<StubLine>()
+    private val logEntries = ArrayDeque<String>()
+    private val message = StringBuilder()
+
+    /**
+     * The number of characters composed by the last update.
+     */
+    var lastLength = 0
+        private set
+
+    override fun log(entry: String) {
+        logEntries.addLast(entry)
+        while (logEntries.size > logCapacity) logEntries.removeFirst()
+    }
+
+    override fun addData(caption: String, value: Any) {
+        cleared.add(StubLine(caption, value, null))
+    }
+
+    override fun addRetained(caption: String, value: Any): TelemetrySink.Line =
+            StubLine(caption, value, null).also { retained.add(it) }
+
+    override fun addSupplied(caption: String, producer: () -> Any): TelemetrySink.Line =
+            StubLine(caption, null, producer).also { retained.add(it) }
+
+    override fun remove(line: TelemetrySink.Line) {
+        retained.remove(line)
+    }
+
+    override fun update() {
+        message.setLength(0)
+        for (line in retained) compose(line)
+        for (line in cleared) compose(line)
+        for (entry in logEntries) message.append(entry).append('\n')
+        lastLength = message.length
+        if (isAutoClear) cleared.clear()
+    }
+
+    private fun compose(line: StubLine) {
+        message.append(line.caption).append(" : ").append(line.producer?.invoke() ?: line.current).append('\n')
+    }
+}
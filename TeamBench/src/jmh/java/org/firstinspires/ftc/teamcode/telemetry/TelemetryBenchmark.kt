@@ -0,0 +1,68 @@
+package org.firstinspires.ftc.teamcode.telemetry
+
+import org.firstinspires.ftc.teamcode.util.StepClock
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Measures Telemetry against a sink that only composes transmissions:
+ *  - a TeleOp loop, which writes its lines and flushes them
+ *  - a status line written in Autonomous, paced to the configured update rate while the clock
+ *    moves by a millisecond per write
+ *  - a data line replaced in place, as when the log scrolls
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+@State(Scope.Thread)
+open class TelemetryBenchmark {
+
+    private val clock = StepClock()
+    private lateinit var teleOp: Telemetry
+    private lateinit var autonomous: Telemetry
+    private lateinit var scrolling: Telemetry
+    private var loop = 0
+
+    @Setup
+    fun setUp() {
+        teleOp = Telemetry(StubTelemetrySink(), clock)
+
+        autonomous = Telemetry(StubTelemetrySink(), clock)
+        autonomous.autoClear = false
+        autonomous.autoUpdate = true
+        autonomous.maxUpdateRate = Telemetry.Config().maxUpdateRate
+        autonomous.logCapacity = 9
+
+        scrolling = Telemetry(StubTelemetrySink(), clock)
+        scrolling.logCapacity = 9
+    }
+
+    @Benchmark
+    open fun teleOpLoop(): Int {
+        loop++
+        teleOp.write("Loop", "running")
+        teleOp.data("Loop count", loop)
+        teleOp.data("Turn power", 0.25)
+        teleOp.data("Collector", loop and 1 == 0)
+        teleOp.flush()
+        return loop
+    }
+
+    @Benchmark
+    open fun autonomousWrite(): Long {
+        clock.nanos += 1000000
+        autonomous.write("Task", "knockJewel")
+        return autonomous.suppressedUpdates
+    }
+
+    @Benchmark
+    open fun scrollingData(): Int {
+        loop++
+        scrolling.data("Pose", loop)
+        return loop
+    }
+}
@@ -0,0 +1,80 @@
+package org.firstinspires.ftc.teamcode.teleop
+
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Measures the gamepad change detection that runs in every TeleOp loop: `GamepadListener.update`
+ * and `ChangeBasedInputColumn.onChange`.
+ *
+ * Each is measured with the input steady, as in most loops, and with one input changing in
+ * every loop, which calls the callbacks.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+@State(Scope.Thread)
+open class GamepadBenchmark {
+
+    /**
+     * Stands in for the SDK's Gamepad, with public fields like it.
+     */
+    class Pad {
+        @JvmField var a = false
+        @JvmField var b = false
+        @JvmField var x = false
+        @JvmField var y = false
+        @JvmField var left_bumper = false
+        @JvmField var right_bumper = false
+        @JvmField var left_trigger = 0f
+        @JvmField var right_trigger = 0f
+    }
+
+    /**
+     * The number of rules of the listener.
+     */
+    @Param("4", "8")
+    @JvmField var rules = 0
+
+    private val pad = Pad()
+    private var changes = 0
+    private lateinit var listener: GamepadListener<Pad>
+    private lateinit var column: ChangeBasedInputColumn<Boolean>
+
+    @Setup
+    fun setUp() {
+        val properties = listOf<GamepadProperty<Pad>>(
+                { it.a }, { it.b }, { it.x }, { it.y },
+                { it.left_bumper }, { it.right_bumper },
+                { it.left_trigger > 0.3 }, { it.right_trigger > 0.3 })
+        listener = GamepadListener(pad, properties.take(rules).map { it to { _: Boolean -> changes++ } })
+        column = ChangeBasedInputColumn { pad.a }
+    }
+
+    @Benchmark
+    open fun listenerSteady(): Int {
+        listener.update()
+        return changes
+    }
+
+    @Benchmark
+    open fun listenerChanging(): Int {
+        pad.a = !pad.a
+        listener.update()
+        return changes
+    }
+
+    @Benchmark
+    open fun columnSteady(): Boolean = column.onChange { _, _ -> changes++ }
+
+    @Benchmark
+    open fun columnChanging(): Boolean {
+        pad.a = !pad.a
+        return column.onChange { _, _ -> changes++ }
+    }
+}
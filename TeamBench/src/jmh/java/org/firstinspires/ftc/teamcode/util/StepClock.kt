@@ -0,0 +1,20 @@
+package org.firstinspires.ftc.teamcode.util
+
+/**
+ * A clock for benchmarks that only moves when told to, so that code paced by time takes the same
+ * paths in every iteration, however fast it runs.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+class StepClock : Clock {
+    var nanos = 0L
+
+    override fun nanoTime() = nanos
+
+    override fun sleep(durationMs: Long) {
+        nanos += durationMs * 1000000
+    }
+}
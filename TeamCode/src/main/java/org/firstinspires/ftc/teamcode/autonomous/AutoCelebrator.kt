@@ -39,7 +39,7 @@ class AutoCelebrator {
         set(raised) {
             pour.position = if (raised) config.pourUp else config.pourDown
             if (raised != field) {
-                Thread.sleep(config.pourMovementTime.toLong())
+                Hardware.clock.sleep(config.pourMovementTime.toLong())
                 field = raised
             }
         }
@@ -48,10 +48,12 @@ class AutoCelebrator {
         if (time > 2 * config.pourMovementTime)
             Hardware.telemetry.warning("Can't keep up! Target time $time")
 
-        val startTime = System.currentTimeMillis()
+        val startTime = Hardware.clock.millis()
         pourRaised = false
         pourRaised = true
-        while (System.currentTimeMillis() - startTime < time);
+        // Sleep out the rest of the note rather than spinning, which a virtual clock would never end
+        val remaining = time - (Hardware.clock.millis() - startTime)
+        if (remaining > 0) Hardware.clock.sleep(remaining)
     }
 
     fun startMusic(name: String) {
@@ -1,10 +1,9 @@
 package org.firstinspires.ftc.teamcode.autonomous
 
 import org.firstinspires.ftc.robotcore.external.navigation.RelicRecoveryVuMark
-import org.firstinspires.ftc.teamcode.AllianceColor
 import org.firstinspires.ftc.teamcode.config.ConfigUser
+import org.firstinspires.ftc.teamcode.drivetrain.Pose
 import org.firstinspires.ftc.teamcode.io.Hardware
-import org.locationtech.jts.algorithm.Angle
 import org.locationtech.jts.math.Vector2D
 
 /**
@@ -62,87 +61,119 @@ class AutoNav : IAutoNav {
          */
         val jewelAccessOffset = file.getDouble("JewelAccessOffset")
         val drivePower = file.getDouble("DrivePower")
+
+        /**
+         * A pose is reached when the robot is within these distances of it, in inches and radians.
+         */
+        val positionTolerance = file.getDouble("PositionTolerance")
+        val headingTolerance = Math.toRadians(file.getDouble("HeadingTolerance"))
+
+        /**
+         * The number of extra moves allowed for correcting the error of a move.
+         */
+        val maxCorrections = file.getInteger("MaxCorrections")
+
+        /**
+         * Whether to go to the cryptobox and back in single continuous motions that move and turn
+         *   at the same time, instead of stopping at every waypoint.
+         */
+        val useHolonomicPaths = file.getBoolean("UseHolonomicPaths")
     }
 
     private val config = Config()
 
-    private val isStartingOnCorner: Boolean
-        get() = AutonomousBase.startingLeft == (AutonomousBase.alliance == AllianceColor.RED)
+    /**
+     * The pose the robot was last sent to. Used in place of measurements without odometry,
+     *   in which case moves are replayed relative to it.
+     */
+    private var plannedPose = Pose.ORIGIN
+
+    // Built on use, as the alliance and starting position are set after AutoNav is instantiated
+    private val geometry: AutoNavGeometry
+        get() = AutoNavGeometry(AutonomousBase.alliance, AutonomousBase.startingLeft,
+                config.cryptoboxPositionCorner, config.cryptoboxPositionCentered, config.cryptoboxWidth)
 
     /**
-     * Currently performs the following to the given vector and returns the final modified output:
-     *
-     *  - Mirror across the x axis if on BLUE alliance
-     *
-     *  @param vec The initial vector to modify
-     *  @returns The final modified output
+     * @return The measured pose when odometry is available, otherwise the given expected pose
      */
-    private fun finalizeVector(vec: Vector2D): Vector2D {
-        // Pipeline operation requires clone
-        var out = Vector2D(vec)
+    private fun measure(expected: Pose): Pose = Hardware.poseEstimator?.pose ?: expected
 
-        if (AutonomousBase.alliance == AllianceColor.BLUE) {
-            out = Vector2D(out.x, -out.y)
-        }
+    override fun driveTo(target: Pose) {
+        // Without odometry there is nothing to correct
+        val attempts = if (Hardware.poseEstimator != null) config.maxCorrections + 1 else 1
+        var pose = measure(plannedPose)
 
-        return out
+        with(Hardware.drivetrain) {
+            for (attempt in 1..attempts) {
+                val vector = pose.vectorTo(target)
+                val isMoving = pose.distanceTo(target) >= config.positionTolerance
+                val isTurning = Math.abs(pose.turnTo(target)) >= config.headingTolerance
+                if (!isMoving && !isTurning) break
+
+                if (isMoving && isTurning && config.useHolonomicPaths) {
+                    val radians = pose.turnTo(target)
+                    moveAndTurn(vector, radians, config.drivePower)
+                    pose = measure(pose.moved(vector).turned(radians))
+                    continue
+                }
+                if (isMoving) {
+                    move(vector, config.drivePower)
+                    pose = measure(pose.moved(vector))
+                }
+                if (isTurning) {
+                    val radians = pose.turnTo(target)
+                    turn(radians, config.drivePower)
+                    pose = measure(pose.turned(radians))
+                }
+            }
+        }
+        plannedPose = target
+        Hardware.telemetry.data("Pose", pose)
     }
 
     // Jewel arm on left side (negative x)
-    override fun beginJewelKnock() {
-        Hardware.drivetrain.move(Vector2D(config.jewelAccessOffset, 0.0), config.drivePower)
-    }
+    override fun beginJewelKnock() = driveTo(Pose(config.jewelAccessOffset, 0.0, 0.0))
 
-    override fun endJewelKnock() {
-        Hardware.drivetrain.move(Vector2D(-config.jewelAccessOffset, 0.0), config.drivePower)
-    }
+    override fun endJewelKnock() = driveTo(Pose.ORIGIN)
 
-    override fun beginReadingVuMark() = Hardware.drivetrain.turn(Math.PI)
+    override fun beginReadingVuMark() = driveTo(Pose.ORIGIN.turned(Math.PI))
 
     // Turning 180 degrees has the same result regardless of direction of rotation
-    override fun endReadingVuMark() = Hardware.drivetrain.turn(Math.PI)
-
-    private fun instructionsToCryptoBox(): Pair<Vector2D, Double> {
-        return if (isStartingOnCorner)
-        // Same rotation for CORNER of both sides
-            finalizeVector(config.cryptoboxPositionCorner) to -90.0
-        else
-        // Red needs to turn 180deg for CENTERED, Red is lined up already
-            finalizeVector(config.cryptoboxPositionCentered) to
-                    if (AutonomousBase.alliance == AllianceColor.RED) 0.0 else 180.0
-    }
+    override fun endReadingVuMark() = driveTo(Pose.ORIGIN)
 
-    private fun instructionsToColumn(vuMark: RelicRecoveryVuMark): Vector2D {
-        if (vuMark == RelicRecoveryVuMark.UNKNOWN) {
+    private fun columnOf(vuMark: RelicRecoveryVuMark): Int = when (vuMark) {
+        RelicRecoveryVuMark.LEFT -> AutoNavGeometry.COLUMN_LEFT
+        RelicRecoveryVuMark.RIGHT -> AutoNavGeometry.COLUMN_RIGHT
+        RelicRecoveryVuMark.CENTER -> AutoNavGeometry.COLUMN_CENTER
+        RelicRecoveryVuMark.UNKNOWN -> {
             Hardware.telemetry.warning("Instructions to UNKNOWN cryptobox column?!")
-            return Vector2D(0.0, 0.0)
+            AutoNavGeometry.COLUMN_CENTER
         }
-
-        // NOTE: The robot MUST face the cryptobox before moving in this vector.
-        return Vector2D(when (vuMark) {
-            RelicRecoveryVuMark.LEFT -> -config.cryptoboxWidth
-            RelicRecoveryVuMark.RIGHT -> config.cryptoboxWidth
-            else -> 0.0
-        }, 0.0)
     }
 
+    private fun waypointsToCryptoBox(vuMark: RelicRecoveryVuMark): List<Pose> =
+            geometry.waypointsToCryptoBox(columnOf(vuMark))
+
     override fun goToCryptoBox(vuMark: RelicRecoveryVuMark) {
-        val (movement, turnDeg) = instructionsToCryptoBox()
-        with(Hardware.drivetrain) {
-            move(Vector2D(0.0, movement.y), config.drivePower)
-            move(Vector2D(movement.x, 0.0), config.drivePower)
-            turn(Angle.toRadians(turnDeg), config.drivePower)
-            move(instructionsToColumn(vuMark), config.drivePower)
-            // FIXME repetition
+        val waypoints = waypointsToCryptoBox(vuMark)
+        if (config.useHolonomicPaths) {
+            // Straight to the column, turning on the way
+            driveTo(waypoints.last())
+            return
+        }
+        for (waypoint in waypoints) {
+            driveTo(waypoint)
         }
     }
 
     override fun returnFromCryptoBox(vuMark: RelicRecoveryVuMark) {
-        val (movement, turnDeg) = instructionsToCryptoBox()
-        with(Hardware.drivetrain) {
-            move(instructionsToColumn(vuMark).negate(), config.drivePower)
-            turn(Angle.toRadians(-turnDeg), config.drivePower)
-            move(movement.negate(), config.drivePower)
+        if (config.useHolonomicPaths) {
+            driveTo(Pose.ORIGIN)
+            return
         }
+        val (_, alongX, facing, _) = waypointsToCryptoBox(vuMark)
+        driveTo(facing)
+        driveTo(alongX)
+        driveTo(Pose.ORIGIN)
     }
-}
\ No newline at end of file
+}
@@ -6,6 +6,7 @@ import org.firstinspires.ftc.robotcore.external.navigation.RelicRecoveryVuMark
 import org.firstinspires.ftc.teamcode.AllianceColor
 import org.firstinspires.ftc.teamcode.config.ConfigUser
 import org.firstinspires.ftc.teamcode.io.Hardware
+import org.firstinspires.ftc.teamcode.io.Waiter
 import org.locationtech.jts.math.Vector2D
 import java.util.*
 
@@ -47,19 +48,34 @@ open class AutonomousBase(val allianceColor: AllianceColor,
         val jewelDisplacementMax = file.getDouble("JewelDisplacementMax")
         // For how much should it wait for Vuforia to recognize the VuMark? (in ms)
         val vuMarkTimeout = file.getInteger("VuMarkTimeout")
+        val vuMarkReturnReserve = file.getInteger("VuMarkReturnReserve")
         val flywheelPower = file.getDouble("FlywheelPower")
         // For how long should it power the motors to shove the glyphs into place? (in ms)
         val glyphShoveTime = file.getInteger("GlyphShoveTime")
+
+        // How many recent telemetry messages to keep; status lines update in place (0 to disable)
+        val telemetryLogCapacity = file.getInteger("TelemetryLogCapacity")
     }
 
     lateinit var config: Config
 
     lateinit var navigator: IAutoNav
     lateinit var vuforia: IVuforia
-    lateinit var decider: DecisionMaker
+    lateinit var decider: DecisionMaker<AutonomousBase>
 
     var vuMark: RelicRecoveryVuMark? = null
 
+    /**
+     * The seed of the random numbers tasks use. It is recorded, so that a replay can use it again.
+     */
+    var randomSeed: Long = System.nanoTime()
+    lateinit var random: Random
+
+    /**
+     * Creates the VuMark reader during initialization; replaced while replaying a recorded run.
+     */
+    var vuforiaProvider: (AutonomousBase) -> IVuforia = { Vuforia(it) }
+
     /**
      * Main procedure for Autonomous.
      *
@@ -67,13 +83,27 @@ open class AutonomousBase(val allianceColor: AllianceColor,
      */
     @Throws(InterruptedException::class)
     override fun runOpMode() {
-        if (!initAll()) return
-
-        waitForStart()
+        try {
+            // Whatever initialization started is stopped even when it failed part way
+            if (!initAll()) return
+
+            waitForStart()
+            // The robot may have been placed after initialization
+            Hardware.poseEstimator?.reset()
+            decider.startPeriod()
+            runTasks()
+        } finally {
+            Hardware.shutdown()
+        }
+    }
 
+    /**
+     * Runs the tasks according to the configured decision model, then celebrates if enabled.
+     */
+    private fun runTasks() {
         if (config.useDecisionMaker) {
             Hardware.telemetry.write("Task Decision Model", "Arbitrary")
-            while (!decider.isDone && !isStopRequested) {
+            while (!decider.isDone && decider.hasTimeLeft && !isStopRequested) {
                 runTask(decider.nextTask()!!)
             }
         } else {
@@ -89,7 +119,7 @@ open class AutonomousBase(val allianceColor: AllianceColor,
                 }
             }
             if (useFailsafe) {
-                while (!decider.isDone && !isStopRequested) {
+                while (!decider.isDone && decider.hasTimeLeft && !isStopRequested) {
                     val task = decider.nextTask()
                     if (task != null) {
                         runTask(task)
@@ -127,15 +157,20 @@ open class AutonomousBase(val allianceColor: AllianceColor,
             // PRE-INIT - must be above all others
             config = Config()
             Hardware.init(this, config.motorPower)
+            random = Random(randomSeed)
+            Hardware.recorder?.seed = randomSeed
 
             with(Hardware) {
                 navigator = AutoNav()
-                vuforia = Vuforia(opMode)
-                decider = DecisionMaker()
+                vuforia = vuforiaProvider(this@AutonomousBase)
+                decider = DecisionMaker(TaskRegistry.entries, waiter, telemetry, { it.enterSafeState() })
+                decider.onTaskChanged = { recorder?.task = it }
 
                 // No need to hold telemetry data back in a LinearOpMode
                 Hardware.telemetry.autoClear = false
                 Hardware.telemetry.autoUpdate = true
+                // Keep telemetry from growing throughout the match
+                Hardware.telemetry.logCapacity = config.telemetryLogCapacity
 
                 // Assign properties to companion object
                 alliance = allianceColor
@@ -166,17 +201,32 @@ open class AutonomousBase(val allianceColor: AllianceColor,
         return result
     }
 
+    /**
+     * Puts the hardware into a safe state after a task was cancelled or failed with an exception,
+     * as it may have left motors running, the jewel arm lowered or Vuforia tracking.
+     */
+    fun enterSafeState() {
+        try {
+            Hardware.drivetrain.stop()
+            Hardware.glypher.collectorPower = 0.0
+            vuforia.stopTracking()
+            Hardware.knocker.raiseArm()
+        } catch (exc: Exception) {
+            Hardware.telemetry.error("Failed to enter safe state: ${exc.message}")
+        }
+    }
+
     // Tasks
     // TODO("testing pending") Optimize reliability coefficients
 
     object Tasks {
 
-        @Task(priority = 30.0 / 85.0, reliability = 0.75)
+        @Task(priority = 30.0 / 85.0, reliability = 0.75, duration = 6.0, budget = 10.0)
         fun knockJewel(opMode: AutonomousBase): Boolean {
 
             /** Moves the arm for a random amount in either direction, bounded by a configured parameter.*/
             fun armDisplacement() =
-                    (Random().nextDouble() - 0.5) * 2 * opMode.config.jewelDisplacementMax
+                    (opMode.random.nextDouble() - 0.5) * 2 * opMode.config.jewelDisplacementMax
 
             with(Hardware.knocker) {
                 opMode.navigator.beginJewelKnock()
@@ -186,7 +236,7 @@ open class AutonomousBase(val allianceColor: AllianceColor,
                 run attempt@ {
                     repeat(opMode.config.jewelSenseAttempts) { i ->
                         Hardware.telemetry.write("Knock jewel attempt", (i + 1).toString())
-                        opMode.sleep(1000)
+                        Hardware.waiter.sleep(1000)
 
                         val colorDetected = detect()
 
@@ -208,31 +258,35 @@ open class AutonomousBase(val allianceColor: AllianceColor,
             }
         }
 
-        @Task(priority = 10.0 / 85.0, reliability = 0.9)
+        @Task(priority = 10.0 / 85.0, reliability = 0.9, duration = 4.0, budget = 6.0)
         fun parkInSafeZone(opMode: AutonomousBase): Boolean {
             opMode.navigator.goToCryptoBox(RelicRecoveryVuMark.CENTER)
-            opMode.sleep(2000)
+            Hardware.waiter.sleep(2000)
             return true
         }
 
-        @Task(priority = 30.0 / 85.0, reliability = 0.7)
+        @Task(priority = 30.0 / 85.0, reliability = 0.7, duration = 3.0, budget = 16.0)
         fun readVuMark(opMode: AutonomousBase): Boolean {
             with(opMode) {
                 navigator.beginReadingVuMark()
                 vuforia.startTracking()
 
                 // Allow camera to focus
-                opMode.sleep(3000)
-
-                // Repeat until timeout or recognition
-                val startTime = System.currentTimeMillis()
-                while (System.currentTimeMillis() - startTime < opMode.config.vuMarkTimeout) {
+                Hardware.waiter.sleep(3000)
+
+                // Repeat until timeout or recognition, leaving enough of the budget to turn back, so
+                //   that a slow read is a miss rather than a cancelled task
+                val budgetLeft = Hardware.waiter.budgetLeftMs
+                val timeout = if (budgetLeft == Waiter.NO_TIMEOUT)
+                    config.vuMarkTimeout.toLong()
+                else
+                    Math.min(config.vuMarkTimeout.toLong(), Math.max(0L, budgetLeft - config.vuMarkReturnReserve))
+                val result = Hardware.waiter.until(timeout) {
                     vuMark = vuforia.readVuMark()
-
-                    if (vuMark != null)
-                        break
-
+                    Hardware.recorder?.vuMark = vuMark
+                    vuMark != RelicRecoveryVuMark.UNKNOWN
                 }
+                Hardware.telemetry.data("VuMark polls", result.polls)
                 vuforia.stopTracking()
 
                 Hardware.telemetry.write("Read VuMark", vuMark?.name ?: "Failed")
@@ -243,11 +297,11 @@ open class AutonomousBase(val allianceColor: AllianceColor,
             }
         }
 
-        @Task(priority = 15.0 / 85.0, reliability = 0.7)
+        @Task(priority = 15.0 / 85.0, reliability = 0.7, duration = 8.0, budget = 12.0)
         fun placeInCryptoBox(opMode: AutonomousBase): Boolean {
             fun moveForTime(direction: Vector2D, time: Int) {
                 Hardware.drivetrain.startMove(direction)
-                Thread.sleep(time.toLong())
+                Hardware.waiter.sleep(time.toLong())
                 Hardware.drivetrain.stop()
             }
 
@@ -256,7 +310,7 @@ open class AutonomousBase(val allianceColor: AllianceColor,
             with (Hardware) {
                 glypher.collectorPower = opMode.config.flywheelPower
                 glypher.placeGlyph()
-                opMode.sleep(400)
+                Hardware.waiter.sleep(400)
 
                 // Shove it just a bit
                 drivetrain.move(Vector2D(0.0, 0.5))
@@ -1,6 +1,7 @@
 package org.firstinspires.ftc.teamcode.autonomous
 
 import org.firstinspires.ftc.robotcore.external.navigation.RelicRecoveryVuMark
+import org.firstinspires.ftc.teamcode.drivetrain.Pose
 
 /**
  * Describes methods provided by the autonomous navigation module for OpMode use.
@@ -14,6 +15,12 @@ interface IAutoNav {
     // The implementation should use info from DynamicConfig to determine the final drivetrain
     //   instructions.
 
+    /**
+     * Moves and turns to the given pose relative to the starting point. When odometry is
+     * available, the error left by each move is measured and corrected.
+     */
+    fun driveTo(target: Pose)
+
     /**
      * Moves from the starting point to the position in which jewel knocking is performed.
      */
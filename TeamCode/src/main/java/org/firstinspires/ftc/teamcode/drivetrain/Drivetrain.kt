@@ -3,9 +3,11 @@ package org.firstinspires.ftc.teamcode.drivetrain
 import com.qualcomm.robotcore.hardware.DcMotor
 import com.qualcomm.robotcore.hardware.DcMotorSimple
 import com.qualcomm.robotcore.util.Range
-import com.qualcomm.robotcore.util.RobotLog
 import org.firstinspires.ftc.teamcode.config.ConfigUser
-import org.locationtech.jts.algorithm.Angle
+import org.firstinspires.ftc.teamcode.io.SensorHub
+import org.firstinspires.ftc.teamcode.io.Waiter
+import org.firstinspires.ftc.teamcode.util.AsyncLog
+import org.firstinspires.ftc.teamcode.util.AsyncLog.Level
 import org.locationtech.jts.math.Vector2D
 
 /**
@@ -24,20 +26,46 @@ class Drivetrain(
         /**
          * A mapping from MotorPtrs to DcMotor instances.
          */
-        private val motors: Map<IDrivetrain.MotorPtr, DcMotor>) : IDrivetrain {
+        private val motors: Map<MotorPtr, DcMotor>,
+        /**
+         * Used for all blocking waits, so that they are paced and end when the OpMode stops.
+         */
+        private val waiter: Waiter,
+        /**
+         * When given, motor outputs are sent to it as wheel velocity setpoints instead of being
+         * written to the motors as powers.
+         */
+        private val controller: VelocityController? = null,
+        /**
+         * Shares encoder and busy readings with everything else in the same control cycle.
+         */
+        private val sensors: SensorHub = SensorHub(motors)) : IDrivetrain {
+
+    /**
+     * The motors indexed by `MotorPtr.ordinal`, so that hot paths can iterate over
+     * them without creating iterators.
+     */
+    private val motorArray: Array<DcMotor> = Array(MecanumKinematics.MOTOR_COUNT) {
+        motors.getValue(MecanumKinematics.MOTORS[it])
+    }
+
+    /**
+     * Scratch buffer for per-motor values (powers or relative inches), indexed by
+     * `MotorPtr.ordinal`. Reused by every call to avoid allocation.
+     */
+    private val motorValues = DoubleArray(MecanumKinematics.MOTOR_COUNT)
 
     init {
         // Reverse the direction of motors on the left.
-        forEachOf(
-                IDrivetrain.MotorPtr.FRONT_LEFT,
-                IDrivetrain.MotorPtr.REAR_LEFT
-        ) {
-            it.direction = DcMotorSimple.Direction.REVERSE
+        for (ptr in MecanumKinematics.MOTORS) {
+            if (ptr.isLeft) getMotor(ptr).direction = DcMotorSimple.Direction.REVERSE
         }
 
         // Preciseness of movement is crucial in AcsNavigator.
         // Don't let the motors drift.
-        motors.values.forEach { it.zeroPowerBehavior = DcMotor.ZeroPowerBehavior.BRAKE }
+        for (motor in motorArray) {
+            motor.zeroPowerBehavior = DcMotor.ZeroPowerBehavior.BRAKE
+        }
 
         // Reset the encoders.
         setMotorMode(DcMotor.RunMode.STOP_AND_RESET_ENCODER)
@@ -54,11 +82,48 @@ class Drivetrain(
         val msPerMovedInch          = file.getInteger("MsPerMovedInch")
         val msPerCircularSpin       = file.getInteger("MsPerCircularSpin")
         val precisePowerMultiplier  = file.getDouble("PrecisePowerMultiplier")
+
+        // Motion profiles
+        val useMotionProfiles       = file.getBoolean("UseMotionProfiles")
+        val profileMaxVelocity      = file.getDouble("ProfileMaxVelocity")
+        val profileMaxAcceleration  = file.getDouble("ProfileMaxAcceleration")
+        val profileMaxJerk          = file.getDouble("ProfileMaxJerk")
+        val maxWheelSpeed           = file.getDouble("MaxWheelSpeed")
+        val profilePositionGain     = file.getDouble("ProfilePositionGain")
+        val profileTolerance        = file.getInteger("ProfileTolerance")
+        val profileSettleTime       = file.getInteger("ProfileSettleTime")
+        val profileUpdatePeriod     = file.getInteger("ProfileUpdatePeriod")
     }
 
     private val config = Config()
     // END CONFIGURATION
 
+    private val ticksPerInch = config.ticksPerRevolution / config.inchesPerRevolution
+
+    /**
+     * Inches each side of the drivetrain travels (in opposite directions) per radian of turning.
+     */
+    private val inchesPerRadian = config.ticksPerCircularSpin / ticksPerInch / (2 * Math.PI)
+
+    /**
+     * The mode for closed-loop driving. The velocity controller closes the loop itself, so the
+     * SDK's velocity loop is only used without it.
+     */
+    private val velocityMode = if (controller != null)
+        DcMotor.RunMode.RUN_WITHOUT_ENCODER else DcMotor.RunMode.RUN_USING_ENCODER
+
+    /**
+     * Encoder moves follow motion profiles when configured, and always when the velocity
+     * controller is used, since RUN_TO_POSITION would fight it.
+     */
+    private val isProfiling = config.useMotionProfiles || controller != null
+
+    /**
+     * Profiles of encoder-based moves, by distance.
+     */
+    private val profiles = MotionProfile.Cache(
+            config.profileMaxVelocity, config.profileMaxAcceleration, config.profileMaxJerk)
+
     /**
      * When true, this multiplies the final power output of the motors by a value specified in the config
      * (as "PrecisePowerMultiplier"). This feature intends to help the driver make precise movements
@@ -68,161 +133,192 @@ class Drivetrain(
     private val preciseMultiplier: Double
             get() = if (isUsingPrecisePower) config.precisePowerMultiplier else 1.0
 
+    private fun checkPower(power: Double) {
+        if (power == 0.0) {
+            throw RuntimeException("power cannot be 0, the robot will not move")
+        }
+        if (power < 0) {
+            throw RuntimeException("power ($power) cannot be negative, robot will move in opposite direction")
+        }
+    }
+
     /**
-     * Defines a pair of diagonal motors. Useful for Mecanum manipulation.
-     * The naming convention for enum constants depend on in which direction the wheels, when
-     * rotating in positive power, take the robot.
+     * Sends the given per-motor outputs, either as powers or as velocity setpoints of the
+     * velocity controller.
      *
-     * @author Michael
+     * @param outputs    Outputs indexed by `MotorPtr.ordinal`, [-1, 1]
+     * @param multiplier Multiplier applied to every output
      */
-    private enum class MotorDiagonalPair(val motors: Array<IDrivetrain.MotorPtr>,
-                                         val displayName: String) {
-        RIGHT(arrayOf(
-                IDrivetrain.MotorPtr.FRONT_LEFT, IDrivetrain.MotorPtr.REAR_RIGHT), "FL RR pair"),
-        LEFT(arrayOf(
-                IDrivetrain.MotorPtr.FRONT_RIGHT, IDrivetrain.MotorPtr.REAR_LEFT), "FR RL pair");
-
-        override fun toString(): String = displayName
+    private fun applyOutputs(outputs: DoubleArray, multiplier: Double = 1.0) {
+        if (controller != null) {
+            controller.command(outputs, multiplier)
+        } else {
+            for (i in motorArray.indices) {
+                motorArray[i].power = outputs[i] * multiplier
+            }
+        }
     }
 
-    /*
-        # A DISCOVERY ABOUT MECANUM DIRECTIONS
-        (0, 1) -> (1, 1) x+1 FWD
-        (1, 1) -> (1, 0) y-1 RIGHT-FWD
-        (1, 0) -> (1, -1) y-1 RIGHT
-        (1, -1) -> (0, -1) x-1 RIGHT-BWD
-        (0, -1) -> (-1, -1) x-1 BWD
-        (-1, -1) -> (-1, 0) y+1 LEFT-BWD
-        (-1, 0) -> (-1, 1) y+1 LEFT
-        (-1, 1) -> (0, 1) x+1 LEFT-FWD
-
-        Conclusion: a 45-degree clockwise rotation will convert an input vector to a vector where
-          the x value is the relative target position for the RIGHT pair and the y value is the <...>
-          for the LEFT pair.
-
-        Power calculation:
-         - Rotate vector 45 deg
-         - Scale vector to have absolute value of at least one component be 1 ((-1, -0.4), (0.3, 1))
-         - Multiply vector by given power value
-         - Assign components to diagonal pairs
-
-        Target position calculation:
-         - Rotate vector 45 deg
-         - Convert both components from inches to revolutions, then to ticks
-         - Assign converted ticks to diagonal pairs
-
-        Duration calculation:
-         - Rotate vector 45 deg
-         - Convert both components from inches to milliseconds, then divide both by power value
-         - Sleep for converted milliseconds (then stop motors)
-     */
+    // Same as startMove(), except without mode setting. Universal across encoder and non-encoder.
+    private fun setMotorPowers(direction: Vector2D, multiplier: Double) {
+        MecanumKinematics.movementPowers(direction.x, direction.y, multiplier, motorValues)
+        applyOutputs(motorValues)
+        AsyncLog.log(Level.DEBUG, "Drivetrain", "Powers FL={} FR={} RL={} RR={}",
+                motorValues[MotorPtr.FRONT_LEFT.ordinal],
+                motorValues[MotorPtr.FRONT_RIGHT.ordinal],
+                motorValues[MotorPtr.REAR_LEFT.ordinal],
+                motorValues[MotorPtr.REAR_RIGHT.ordinal])
+    }
 
-    /**
-     * Calculates a mapping from the diagonal pairs of motors to their power from
-     * any arbitrary vector.
-     * @param vec The vector indicating the direction to move in
-     * @param power Power multiplier, (0, 1]
-     * @return A mapping from a diagonal pair of motors to their desired power
-     */
-    private fun getMovementPowers(vec: Vector2D, power: Double): Map<MotorDiagonalPair, Double> {
-        val directionPowers = normalize(vec.rotate(Angle.toRadians(315.0))).multiply(power)
-        return mapOf(
-                MotorDiagonalPair.RIGHT to directionPowers.x,
-                MotorDiagonalPair.LEFT to directionPowers.y
-        )
+    private fun setRelativeTargetPosition(ptr: MotorPtr, relativeInch: Double) {
+        //      i in      IPR in    TPR tick
+        // t = ─────── / ─────── * ──────────
+        //        1        1 rot      1 rot
+        val relativeTicks = relativeInch / config.inchesPerRevolution * config.ticksPerRevolution
+        val current = sensors.current.position(ptr)
+        getMotor(ptr).targetPosition = current + Math.round(relativeTicks).toInt()
+        AsyncLog.log(Level.DEBUG, ptr.name, "POS_SET C={} T={}", current.toDouble(), relativeTicks)
     }
 
-    // Power has range [-1, 1]
-    // Positive power means clockwise turning
-    private fun getTurnPowers(power: Double): Map<IDrivetrain.MotorPtr, Double> {
-        if (power == 0.0) {
-            // No turning, 0 power
-            return this.motors.keys.map { it to power }.toMap()
+    private fun setMotorMode(mode: DcMotor.RunMode) {
+        for (motor in motorArray) {
+            motor.mode = mode
         }
-        return mapOf(
-                IDrivetrain.MotorPtr.REAR_LEFT to power,
-                IDrivetrain.MotorPtr.FRONT_LEFT to power,
-                IDrivetrain.MotorPtr.REAR_RIGHT to -power,
-                IDrivetrain.MotorPtr.FRONT_RIGHT to -power
-        )
     }
 
     /**
-     * Converts a direction in which the caller wishes to travel to a mapping from diagonal pair to
-     *   that pair's desired target position in inches.
-     *
-     *  @param direction A vector from the robot to the target position where the robot is at (0,0)
-     *  @return A mapping from a diagonal pair to its desired relative position in inches
+     * Sets the power of the motors on each side of the robot.
      */
-    private fun directionToRelativeTargets(direction: Vector2D): Map<MotorDiagonalPair, Double> {
-        val positions = direction.rotate(Angle.toRadians(315.0))
+    private fun setSidePowers(leftPower: Double, rightPower: Double) {
+        for (ptr in MecanumKinematics.MOTORS) {
+            motorValues[ptr.ordinal] = if (ptr.isLeft) leftPower else rightPower
+        }
+        applyOutputs(motorValues)
+    }
 
-        return mapOf(
-                MotorDiagonalPair.RIGHT to positions.x,
-                MotorDiagonalPair.LEFT to positions.y
-        )
+    /**
+     * The motion started by moveAsync, turnAsync or moveAndTurnAsync that is still in progress, if any.
+     */
+    private var activeMotion: Motion? = null
+
+    private fun begin(motion: Motion): Motion {
+        activeMotion = motion
+        return motion
     }
 
     /**
-     * Scales the given vector proportionally into one whose max abs(component) is 1.
-     * Creates a clone.
-     * @param vec The vector to be normalized
-     * @return The normalized vector
+     * Performs the given motion and then the one started by the given lambda, as one active motion,
+     * so that motions started meanwhile wait for both.
      */
-    private fun normalize(vec: Vector2D): Vector2D {
-        if (vec.x == 0.0 && vec.y == 0.0) {
-            return Vector2D(vec)
+    private fun beginChain(first: Motion, next: () -> Motion): Motion {
+        var chain = first
+        chain = first.then {
+            // The next part must not wait for the chain it belongs to
+            if (activeMotion === chain) activeMotion = null
+            next()
         }
-        return vec.divide(Math.max(Math.abs(vec.x), Math.abs(vec.y)))
+        return begin(chain)
     }
 
-    private fun checkPower(power: Double) {
-        if (power == 0.0) {
-            throw RuntimeException("power cannot be 0, the robot will not move")
-        }
-        if (power < 0) {
-            throw RuntimeException("power ($power) cannot be negative, robot will move in opposite direction")
+    /**
+     * A motion that sets the motors to 0 power when it finishes or is cancelled.
+     */
+    private abstract inner class DrivetrainMotion : Motion(waiter) {
+        override fun onFinish() {
+            if (activeMotion === this) activeMotion = null
+            haltMotors()
         }
     }
 
-    // Same as startMove(), except without mode setting. Universal across encoder and non-encoder.
-    private fun setMotorPowers(direction: Vector2D, multiplier: Double) {
-        // Grab the pair -> power properties, then set the power of each motor in each pair to its mapped
-        // value.
-        getMovementPowers(direction, multiplier).entries
-                // For each pair -> power entry
-                .forEach { mapping ->
-                    forEachOf(*mapping.key.motors) {
-                        it.power = mapping.value
-                        RobotLog.ii(mapping.key.displayName, mapping.value.toString())
-                    }
-                }
-    }
+    /**
+     * A RUN_TO_POSITION motion, which is finished when no motor is busy.
+     */
+    private inner class EncoderMotion : DrivetrainMotion() {
+        private var polls = 0
 
-    private fun setRelativeTargetPosition(motor: DcMotor, relativeInch: Double) {
-        //      i in      IPR in    TPR tick
-        // t = ─────── / ─────── * ──────────
-        //        1        1 rot      1 rot
-        val relativeTicks = relativeInch / config.inchesPerRevolution * config.ticksPerRevolution
-        motor.targetPosition = motor.currentPosition + Math.round(relativeTicks).toInt()
-        RobotLog.dd(motor.connectionInfo, "POS_SET C=${motor.currentPosition} T=$relativeTicks")
-    }
+        override fun poll(): Boolean {
+            polls++
+            return !isBusy
+        }
 
-    private fun forEachOf(vararg motors: IDrivetrain.MotorPtr, todo: (DcMotor) -> Unit) {
-        motors.map(this::getMotor).forEach(todo)
+        override fun onFinish() {
+            AsyncLog.log(Level.DEBUG, "Drivetrain", "Motion finished after {} polls", polls.toDouble())
+            super.onFinish()
+        }
     }
 
-    private fun setMotorMode(mode: DcMotor.RunMode) {
-        this.motors.values
-                .forEach { it.mode = mode }
+    /**
+     * A move, turn or both at once that follows a motion profile in closed-loop velocity mode.
+     * The profile covers the length of the path, which bounds the distance of the fastest wheel;
+     * the path gives every wheel's share of it. On each update, every motor gets a feedforward
+     * output from the profile velocity, corrected by its position error.
+     *
+     * @param path  The travel of each motor over the motion
+     * @param power Multiplier of the profile's velocity limit, (0, 1]
+     */
+    private inner class ProfiledMotion(private val path: HolonomicPath,
+                                       power: Double) : DrivetrainMotion() {
+        private val outputs = DoubleArray(MecanumKinematics.MOTOR_COUNT)
+        private val expected = DoubleArray(MecanumKinematics.MOTOR_COUNT)
+        private val startTicks = IntArray(MecanumKinematics.MOTOR_COUNT)
+        private val profile = profiles.get(path.length, power)
+        private val setpoint = MotionProfile.Setpoint()
+        private val startTime = waiter.clock.nanoTime()
+
+        override val updatePeriodMs = config.profileUpdatePeriod.toLong()
+
+        init {
+            val snapshot = sensors.current
+            for (ptr in MecanumKinematics.MOTORS) {
+                startTicks[ptr.ordinal] = snapshot.position(ptr)
+            }
+            AsyncLog.log(Level.DEBUG, "Drivetrain") { "Following $path with $profile" }
+        }
+
+        override fun poll(): Boolean {
+            val time = (waiter.clock.nanoTime() - startTime) / 1e9
+            profile.sample(time, setpoint)
+
+            // Progress along the path, and its rate per second
+            val progress = setpoint.position / profile.distance
+            val speed = setpoint.velocity / profile.distance
+            path.travelAt(progress, expected)
+            path.rateAt(progress, outputs)
+
+            var isSettled = true
+            val snapshot = sensors.current
+            for (ptr in MecanumKinematics.MOTORS) {
+                val i = ptr.ordinal
+                val error = expected[i] - (snapshot.position(ptr) - startTicks[i]) / ticksPerInch
+                if (Math.abs(error * ticksPerInch) > config.profileTolerance) isSettled = false
+
+                outputs[i] = Range.clip(outputs[i] * speed / config.maxWheelSpeed +
+                        config.profilePositionGain * error, -1.0, 1.0)
+            }
+            applyOutputs(outputs)
+
+            return time >= profile.duration &&
+                    (isSettled || time >= profile.duration + config.profileSettleTime / 1000.0)
+        }
     }
 
-    private fun dissolvePairMap(map: Map<MotorDiagonalPair, Double>):
-            Map<IDrivetrain.MotorPtr, Double> =
-            map.entries.map { (pair, power) -> pair.motors.map { it to power } }.flatten().toMap()
+    /**
+     * A motion in time-based mode, which is finished after the given duration.
+     */
+    private inner class TimedMotion(durationMs: Long) : DrivetrainMotion() {
+        private val endTime = waiter.clock.millis() + durationMs
 
-    private fun normalizeDoubleCircle(radians: Double): Double =
-        Angle.normalizePositive(Math.abs(radians)) * (if (radians < 0.0) -1 else 1)
+        override fun poll() = waiter.clock.millis() >= endTime
+
+        // Sleep straight to the end time instead of polling towards it
+        override fun await(timeoutMs: Long): Boolean {
+            val remaining = endTime - waiter.clock.millis()
+            if (timeoutMs == Waiter.NO_TIMEOUT && remaining > 0 && !isDone) {
+                cancelOnExpiry { waiter.sleep(remaining) }
+            }
+            return super.await(timeoutMs)
+        }
+    }
 
     /**
      * Moves the robot according to the specified vector in default power.
@@ -242,39 +338,45 @@ class Drivetrain(
      * @param power  The power, [0.0, 1.0], to set the motor(s) to.
      */
     override fun move(vector: Vector2D, power: Double) {
+        moveAsync(vector, power).await()
+    }
+
+    override fun moveAsync(vector: Vector2D) = moveAsync(vector, defaultPower)
+
+    override fun moveAsync(vector: Vector2D, power: Double): Motion {
         checkPower(power)
 
         // Vector with endpoint as origin means no movement
         if (vector.x == 0.0 && vector.y == 0.0)
-            return
+            return Motion.completed(waiter)
+
+        // Wait for other motor operations to complete
+        activeMotion?.await()
 
-        RobotLog.i("Moving to $vector")
+        AsyncLog.log(Level.INFO, "Drivetrain", "Moving to ({}, {})", vector.x, vector.y)
 
-        if (config.countUsingTime) {
+        return if (config.countUsingTime) {
             setMotorMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER)
 
             val waitTime = config.msPerMovedInch * vector.length() / power
 
             setMotorPowers(vector, power)
-            Thread.sleep(waitTime.toLong())
-
-            stop()
+            begin(TimedMotion(waitTime.toLong()))
+        } else if (isProfiling) {
+            setMotorMode(velocityMode)
+            begin(ProfiledMotion(HolonomicPath(vector.x, vector.y, 0.0, inchesPerRadian), power))
         } else {
             setMotorMode(DcMotor.RunMode.RUN_USING_ENCODER)
 
-            // Determine the positional targets for each motor pair
-            directionToRelativeTargets(vector).forEach { (pair, position) ->
-                // Set the relative target position of all motors in the pair
-                pair.motors.forEach {
-                    setRelativeTargetPosition(getMotor(it), position)
-                }
+            // Determine the positional targets for each motor
+            MecanumKinematics.relativeTargets(vector.x, vector.y, motorValues)
+            for (ptr in MecanumKinematics.MOTORS) {
+                setRelativeTargetPosition(ptr, motorValues[ptr.ordinal])
             }
 
             setMotorMode(DcMotor.RunMode.RUN_TO_POSITION)
             setMotorPowers(vector, power)
-
-            while (this.isBusy);
-            stop()
+            begin(EncoderMotion())
         }
     }
 
@@ -284,9 +386,7 @@ class Drivetrain(
      * @return True if any drivetrain motor is busy, otherwise false
      */
     override val isBusy: Boolean
-        get() = this.motors.values.any {
-            it.isBusy
-        }
+        get() = sensors.current.isAnyBusy
 
     /**
      * Starts moving the robot at the default speed according to the specified direction.
@@ -317,9 +417,13 @@ class Drivetrain(
      * Sets the power of all drivetrain motors to 0, thus stopping the robot.
      */
     override fun stop() {
-        for (motor in this.motors.values) {
-            motor.power = 0.0
-        }
+        activeMotion?.cancel()
+        haltMotors()
+    }
+
+    private fun haltMotors() {
+        java.util.Arrays.fill(motorValues, 0.0)
+        applyOutputs(motorValues)
     }
 
     /**
@@ -338,10 +442,19 @@ class Drivetrain(
      * @param power   The power multiplier to set the motor to, (0, 1]
      */
     override fun turn(radians: Double, power: Double) {
+        turnAsync(radians, power).await()
+    }
+
+    override fun turnAsync(radians: Double) = turnAsync(radians, defaultPower)
+
+    override fun turnAsync(radians: Double, power: Double): Motion {
         if (radians == 0.0)
-            return
+            return Motion.completed(waiter)
 
-        if (config.countUsingTime) {
+        // Wait for other motor operations to complete
+        activeMotion?.await()
+
+        return if (config.countUsingTime) {
             this.setMotorMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER)
             val waitTime = config.msPerCircularSpin * (Math.abs(radians) / 2 * Math.PI) / power
 
@@ -351,50 +464,68 @@ class Drivetrain(
                 -power to power
             }
 
-            forEachOf(IDrivetrain.MotorPtr.FRONT_RIGHT, IDrivetrain.MotorPtr.REAR_RIGHT) {
-                it.power = rightPower
-            }
-            forEachOf(IDrivetrain.MotorPtr.FRONT_LEFT, IDrivetrain.MotorPtr.REAR_LEFT) {
-                it.power = leftPower
-            }
-
-            Thread.sleep(waitTime.toLong())
+            setSidePowers(leftPower, rightPower)
 
-            stop()
+            begin(TimedMotion(waitTime.toLong()))
         } else {
             // RUN_USING_ENCODER first
-            this.setMotorMode(DcMotor.RunMode.RUN_USING_ENCODER)
+            this.setMotorMode(velocityMode)
+
+            if (isProfiling) {
+                val path = HolonomicPath(0.0, 0.0, HolonomicPath.normalizeTurn(radians), inchesPerRadian)
+                // Whole circles leave nothing to follow
+                if (path.isEmpty) return Motion.completed(waiter)
+                return begin(ProfiledMotion(path, power))
+            }
 
             // Turn the radians into relative ticks for one side of the drivetrain, then the other side
             //   is the negation of that value.
-            val tickMagnitude = Math.round(normalizeDoubleCircle(radians) / (2 * Math.PI) * config.ticksPerCircularSpin)
+            val tickMagnitude = Math.round(HolonomicPath.normalizeTurn(radians) / (2 * Math.PI) * config.ticksPerCircularSpin)
 
             // !! Used to negate if below 0.0
 
-            // Wait for other motor operations to complete
-            while (this.isBusy);
-
-            forEachOf(
-                    IDrivetrain.MotorPtr.FRONT_RIGHT,
-                    IDrivetrain.MotorPtr.REAR_RIGHT
-            ) {
-                it.targetPosition = it.currentPosition + tickMagnitude.toInt()
-                it.mode = DcMotor.RunMode.RUN_TO_POSITION
-                it.power = power
+            val snapshot = sensors.current
+            for (ptr in MecanumKinematics.MOTORS) {
+                with(getMotor(ptr)) {
+                    targetPosition = if (ptr.isLeft)
+                        (snapshot.position(ptr) - tickMagnitude).toInt()
+                    else
+                        snapshot.position(ptr) + tickMagnitude.toInt()
+                    mode = DcMotor.RunMode.RUN_TO_POSITION
+                    this.power = power
+                }
             }
 
-            forEachOf(
-                    IDrivetrain.MotorPtr.FRONT_LEFT,
-                    IDrivetrain.MotorPtr.REAR_LEFT
-            ) {
-                it.targetPosition = (it.currentPosition - tickMagnitude).toInt()
-                it.mode = DcMotor.RunMode.RUN_TO_POSITION
-                it.power = power
-            }
+            begin(EncoderMotion())
+        }
+    }
 
-            while (this.isBusy);
-            stop()
+    override fun moveAndTurn(vector: Vector2D, radians: Double, power: Double) {
+        moveAndTurnAsync(vector, radians, power).await()
+    }
+
+    override fun moveAndTurnAsync(vector: Vector2D, radians: Double, power: Double): Motion {
+        checkPower(power)
+
+        // A plain move or turn keeps the updates (or exact sleep) of its own motion
+        if (radians == 0.0) return moveAsync(vector, power)
+        if (vector.x == 0.0 && vector.y == 0.0) return turnAsync(radians, power)
+
+        // Only profiled motions can coordinate both; otherwise do one after the other
+        if (!isProfiling || config.countUsingTime) {
+            return beginChain(moveAsync(vector, power)) { turnAsync(radians, power) }
         }
+
+        // Wait for other motor operations to complete
+        activeMotion?.await()
+
+        AsyncLog.log(Level.INFO, "Drivetrain", "Moving to ({}, {}) while turning {} degrees",
+                vector.x, vector.y, Math.toDegrees(radians))
+
+        setMotorMode(velocityMode)
+        val path = HolonomicPath(vector.x, vector.y, HolonomicPath.normalizeTurn(radians), inchesPerRadian)
+        if (path.isEmpty) return Motion.completed(waiter)
+        return begin(ProfiledMotion(path, power))
     }
 
     // Redundancy purposefully included to improve readability
@@ -414,19 +545,7 @@ class Drivetrain(
             return
         }
 
-        forEachOf(
-                IDrivetrain.MotorPtr.FRONT_RIGHT,
-                IDrivetrain.MotorPtr.REAR_RIGHT
-        ) {
-            it.power = validPower
-        }
-
-        forEachOf(
-                IDrivetrain.MotorPtr.FRONT_LEFT,
-                IDrivetrain.MotorPtr.REAR_LEFT
-        ) {
-            it.power = -validPower
-        }
+        setSidePowers(leftPower = -validPower, rightPower = validPower)
     }
 
     override fun actuate(movement: Vector2D, power: Double, turnClockwise: Boolean,
@@ -436,25 +555,13 @@ class Drivetrain(
             return
         }
 
-        // Step 1: Get the movement powers
-        val powers = dissolvePairMap(getMovementPowers(movement, power)).toMutableMap()
-
-        // Step 2: Adjust by the turn powers
-        val turnPowers = getTurnPowers(
-                if (turnClockwise) turnPower else -turnPower)
-        powers.entries.forEach { (ptr, pwr) -> powers[ptr] = pwr + turnPowers[ptr]!! }
-
-        // Step 3: Scale to [-1, 1] if not in limits
-        val scale = powers.values.map(Math::abs).max() ?: 0.0
-        if (scale > 1.0) {
-            powers.entries.forEach { (ptr, pwr) -> powers[ptr] = pwr / scale }
-        }
+        // Steps 1-3: Get the movement powers, adjust by the turn powers, scale to [-1, 1]
+        MecanumKinematics.actuationPowers(movement.x, movement.y, power,
+                if (turnClockwise) turnPower else -turnPower, motorValues)
 
         // Step 4: Assign powers to motors, with preciseMultiplier
         setMotorMode(DcMotor.RunMode.RUN_WITHOUT_ENCODER)
-        for ((ptr, pwr) in powers) {
-            this.getMotor(ptr).power = pwr * preciseMultiplier
-        }
+        applyOutputs(motorValues, preciseMultiplier)
     }
 
     /**
@@ -463,5 +570,5 @@ class Drivetrain(
      * @param ptr The motor's position relative to the robot
      * @return The DcMotor object representing the specified motor
      */
-    override fun getMotor(ptr: IDrivetrain.MotorPtr): DcMotor = this.motors[ptr]!!
+    override fun getMotor(ptr: MotorPtr): DcMotor = motorArray[ptr.ordinal]
 }
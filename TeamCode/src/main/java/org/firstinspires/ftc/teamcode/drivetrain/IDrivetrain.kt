@@ -76,18 +76,6 @@ interface IDrivetrain {
      */
     var isUsingPrecisePower: Boolean
 
-    /**
-     * This enum contains values that point to each motor in the drivetrain.
-     * This is useful for directly sending commands to the individual motors.
-     */
-    enum class MotorPtr(var isFront: Boolean, var isLeft: Boolean) {
-        FRONT_LEFT(true, true), FRONT_RIGHT(true, false),
-        //       │              │
-        //       ├─── ROBOT! ───┤
-        //       │              │
-        REAR_LEFT(false, true), REAR_RIGHT(false, false)
-    }
-
     /**
      * Moves the robot according to the specified vector in default power.
      * If any motor in the drivetrain is busy when this is called, it will block until no motors are busy.
@@ -107,6 +95,27 @@ interface IDrivetrain {
      */
     fun move(vector: Vector2D, power: Double)
 
+    /**
+     * Starts moving the robot according to the specified vector in default power, without blocking.
+     * If a motion started by this or `turnAsync` is still in progress, blocks until it is done.
+     * Ideal for Autonomous, when other work should be done while the robot moves.
+     *
+     * @param vector The vector to move the robot in. See comment above for how it works.
+     * @return A handle that can be polled, awaited, cancelled or chained
+     */
+    fun moveAsync(vector: Vector2D): Motion
+
+    /**
+     * Starts moving the robot according to the specified vector in the specified power, without
+     * blocking. If a motion started by this or `turnAsync` is still in progress, blocks until it is done.
+     * Ideal for Autonomous, when other work should be done while the robot moves.
+     *
+     * @param vector The vector to move the robot in. See comment above for how it works.
+     * @param power The power, (0, 1], to set the motor(s) to.
+     * @return A handle that can be polled, awaited, cancelled or chained
+     */
+    fun moveAsync(vector: Vector2D, power: Double): Motion
+
     /**
      * Starts moving the robot at the default speed according to the specified direction.
      * Ideal for TeleOp (OpMode)
@@ -124,6 +133,7 @@ interface IDrivetrain {
 
     /**
      * Sets the power of all drivetrain motors to 0, thus stopping the robot.
+     * Cancels the motion in progress, if any.
      */
     fun stop()
 
@@ -144,6 +154,48 @@ interface IDrivetrain {
      */
     fun turn(radians: Double, power: Double)
 
+    /**
+     * Starts turning the robot in position for the given amount of radians at the default motor
+     * power, without blocking.
+     * If a motion started by this or `moveAsync` is still in progress, blocks until it is done.
+     * @param radians The amount of radians to rotate the robot for, [[-2π, 2π]]
+     * @return A handle that can be polled, awaited, cancelled or chained
+     */
+    fun turnAsync(radians: Double): Motion
+
+    /**
+     * Starts turning the robot in position for the given amount of radians at the given motor
+     * power, without blocking.
+     * If a motion started by this or `moveAsync` is still in progress, blocks until it is done.
+     * @param radians The amount of radians to rotate the robot for, [[-2π, 2π]]
+     * @param power The power multiplier to set the motor to, (0, 1]
+     * @return A handle that can be polled, awaited, cancelled or chained
+     */
+    fun turnAsync(radians: Double, power: Double): Motion
+
+    /**
+     * Moves the robot according to the specified vector while turning for the given amount of
+     * radians, as one continuous motion. The robot travels in a straight line while its heading
+     * changes evenly along the way. Blocks until the motion is finished.
+     * Ideal for Autonomous
+     * @param vector  The vector to move the robot in, relative to its orientation at the start
+     * @param radians The amount of radians to rotate the robot for, [[-2π, 2π]]
+     * @param power   The power multiplier to set the motor to, (0, 1]
+     */
+    fun moveAndTurn(vector: Vector2D, radians: Double, power: Double)
+
+    /**
+     * Starts moving the robot according to the specified vector while turning for the given amount
+     * of radians, as one continuous motion, without blocking. Implementations that cannot coordinate
+     * both move first and then turn.
+     * If a motion started by this, `moveAsync` or `turnAsync` is still in progress, blocks until it is done.
+     * @param vector  The vector to move the robot in, relative to its orientation at the start
+     * @param radians The amount of radians to rotate the robot for, [[-2π, 2π]]
+     * @param power   The power multiplier to set the motor to, (0, 1]
+     * @return A handle that can be polled, awaited, cancelled or chained
+     */
+    fun moveAndTurnAsync(vector: Vector2D, radians: Double, power: Double): Motion
+
     /**
      * Starts rotating the robot in place in the given direction.
      *
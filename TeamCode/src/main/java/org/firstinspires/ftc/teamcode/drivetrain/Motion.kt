@@ -0,0 +1,150 @@
+package org.firstinspires.ftc.teamcode.drivetrain
+
+import org.firstinspires.ftc.teamcode.io.Waiter
+
+/**
+ * A handle to a motion that was started without blocking, such as by `IDrivetrain.moveAsync`.
+ * The caller is free to do other work (run the collector, move servos, poll Vuforia) while the
+ * motion is in progress, and check on it later.
+ *
+ * Motions are advanced cooperatively: a motion only notices that it has finished (and stops the
+ * motors) when `isDone` is read or `await` is called, so callers should do either regularly.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+abstract class Motion(protected val waiter: Waiter) {
+
+    companion object {
+        /**
+         * Creates a motion that is already finished, for requests that do not move the robot.
+         */
+        fun completed(waiter: Waiter): Motion = object : Motion(waiter) {
+            override fun poll() = true
+            override fun onFinish() {}
+        }
+    }
+
+    private var isFinished = false
+
+    /**
+     * Whether the motion was cancelled before it finished.
+     */
+    var isCancelled = false
+        private set
+
+    /**
+     * Checks the hardware for whether the motion has reached its goal.
+     * Called until it returns true.
+     */
+    protected abstract fun poll(): Boolean
+
+    /**
+     * Called once when the motion has reached its goal, usually to stop the motors.
+     */
+    protected abstract fun onFinish()
+
+    /**
+     * Called once when the motion is cancelled before reaching its goal.
+     */
+    protected open fun onCancel() = onFinish()
+
+    /**
+     * If positive, `await` polls at this fixed interval in milliseconds, for motions that need
+     * regular updates. Otherwise it uses the waiter's adaptive backoff.
+     */
+    protected open val updatePeriodMs: Long = 0
+
+    /**
+     * Whether the motion has either finished or been cancelled. Does not block.
+     */
+    val isDone: Boolean
+        get() {
+            if (!isFinished && !isCancelled && poll()) {
+                isFinished = true
+                onFinish()
+            }
+            return isFinished || isCancelled
+        }
+
+    /**
+     * Blocks until the motion is done, the timeout passes or the OpMode is asked to stop.
+     * The motion is cancelled if the OpMode is asked to stop or the waiter's time budget runs out,
+     * but not when the timeout passes.
+     *
+     * @param timeoutMs Maximum duration of the wait in milliseconds, or `Waiter.NO_TIMEOUT`
+     * @return True if the motion finished, false if it was cancelled or is still in progress
+     */
+    open fun await(timeoutMs: Long = Waiter.NO_TIMEOUT): Boolean {
+        val result = cancelOnExpiry {
+            if (updatePeriodMs > 0)
+                waiter.every(updatePeriodMs, timeoutMs) { isDone }
+            else
+                waiter.until(timeoutMs) { isDone }
+        }
+        if (result.outcome == Waiter.Outcome.STOPPED) cancel()
+        return isFinished
+    }
+
+    /**
+     * Runs the given wait, cancelling this motion if the waiter's time budget runs out during it.
+     */
+    protected inline fun <T> cancelOnExpiry(wait: () -> T): T = try {
+        wait()
+    } catch (exc: Waiter.BudgetExpiredException) {
+        cancel()
+        throw exc
+    }
+
+    /**
+     * Stops the motion if it is still in progress.
+     */
+    fun cancel() {
+        if (!isFinished && !isCancelled) {
+            isCancelled = true
+            onCancel()
+        }
+    }
+
+    /**
+     * Creates a motion that performs this motion and then the motion created by the given lambda.
+     * The lambda is called when this motion finishes; it is never called if this one is cancelled.
+     *
+     * @param next Starts the motion to perform afterwards
+     * @return A handle to both motions in sequence
+     */
+    fun then(next: () -> Motion): Motion = ChainedMotion(this, next)
+
+    private class ChainedMotion(private val first: Motion,
+                                private val next: () -> Motion) : Motion(first.waiter) {
+        private var second: Motion? = null
+
+        override fun poll(): Boolean {
+            val current = second ?: if (first.isDone && !first.isCancelled) {
+                next().also { second = it }
+            } else null
+
+            // Either part being cancelled cancels the whole chain
+            if (current == null) {
+                if (first.isCancelled) cancel()
+                return false
+            }
+            val isCurrentDone = current.isDone
+            if (current.isCancelled) {
+                cancel()
+                return false
+            }
+            return isCurrentDone
+        }
+
+        // Each part stops the motors by itself
+        override fun onFinish() {}
+
+        override fun onCancel() {
+            first.cancel()
+            second?.cancel()
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package org.firstinspires.ftc.teamcode.drivetrain
+
+import com.qualcomm.robotcore.hardware.DcMotor
+import com.qualcomm.robotcore.util.RobotLog
+import org.firstinspires.ftc.teamcode.config.ConfigUser
+import org.firstinspires.ftc.teamcode.io.SensorAcquisition
+import org.firstinspires.ftc.teamcode.util.DoubleSlot
+import org.locationtech.jts.algorithm.Angle
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Tracks the pose of the robot on the field from the drivetrain encoders (odometry).
+ * A dedicated thread integrates the four wheel encoder deltas at a fixed frequency using the inverse
+ * of the kinematics in MecanumKinematics: the average of each diagonal pair gives the movement in
+ * the rotated frame, and the difference between the sides gives the rotation.
+ *
+ * The pose is published as a snapshot that any thread can read without locks. It is relative to
+ * where the estimator was started or last reset; see Pose for the frame.
+ *
+ * Wheel slip is not detected, so the estimate drifts over long distances. It is meant for
+ * correcting the error of individual moves during Autonomous.
+ *
+ * When the encoders are acquired in the background, their latest positions are integrated instead
+ * of reading the hardware again; an update without new positions does nothing.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates an estimator from the encoders of the given drive motors, or from the given
+ *     channel of their positions in MecanumKinematics.MOTORS order if there is one
+ */
+class PoseEstimator(motors: Map<MotorPtr, DcMotor>,
+                    private val config: Config = Config(),
+                    private val encoderChannel: SensorAcquisition.Channel? = null) {
+
+    // CONFIGURATION
+    class Config : ConfigUser("Drivetrain/config.properties") {
+        val useOdometry          = file.getBoolean("UseOdometry")
+        val odometryFrequency    = file.getDouble("OdometryFrequency")
+        val ticksPerRevolution   = file.getInteger("TicksPerRevolution")
+        val inchesPerRevolution  = file.getDouble("InchesPerRevolution")
+        val ticksPerCircularSpin = file.getInteger("TicksPerCircularSpin")
+    }
+
+    private companion object {
+        // Indices in the published snapshot
+        const val X = 0
+        const val Y = 1
+        const val HEADING = 2
+    }
+
+    private val motorArray: Array<DcMotor> = Array(MecanumKinematics.MOTOR_COUNT) {
+        motors.getValue(MecanumKinematics.MOTORS[it])
+    }
+    private val inchesPerTick = config.inchesPerRevolution / config.ticksPerRevolution
+    // Inches each side travels (in opposite directions) for a full turn
+    private val inchesPerSpin = config.ticksPerCircularSpin * inchesPerTick
+    private val periodNanos = (1e9 / config.odometryFrequency).toLong()
+
+    private val snapshot = DoubleSlot(3)
+
+    // Integration state, guarded by the monitor of this estimator
+    private val state = DoubleArray(3)
+    private val ticks = IntArray(MecanumKinematics.MOTOR_COUNT)
+    private val lastTicks = IntArray(MecanumKinematics.MOTOR_COUNT)
+    private val acquired = DoubleArray(MecanumKinematics.MOTOR_COUNT)
+    private var lastStamp = 0L
+    private val deltas = DoubleArray(MecanumKinematics.MOTOR_COUNT)
+    private var isPrimed = false
+
+    /**
+     * The number of updates integrated since the estimator was created.
+     */
+    @Volatile var updates: Long = 0
+        private set
+
+    @Volatile private var isRunning = false
+    private var thread: Thread? = null
+
+    /**
+     * The latest estimate of the robot's pose. Never blocks.
+     */
+    val pose: Pose
+        get() {
+            val values = DoubleArray(3)
+            snapshot.read(values)
+            return Pose(values[X], values[Y], values[HEADING])
+        }
+
+    /**
+     * Sets the current pose, such as at the start of a match. Encoder movement before this is
+     * discarded.
+     *
+     * @param pose The pose of the robot now
+     */
+    @Synchronized
+    fun reset(pose: Pose = Pose.ORIGIN) {
+        state[X] = pose.x
+        state[Y] = pose.y
+        state[HEADING] = pose.heading
+        isPrimed = false
+        snapshot.publish(state)
+    }
+
+    /**
+     * Reads the encoders and integrates their movement since the last update.
+     * Called by the estimator's thread when it is started, but may also be called directly.
+     */
+    @Synchronized
+    fun update() {
+        if (!readTicks()) return
+        for (i in ticks.indices) {
+            deltas[i] = (ticks[i] - lastTicks[i]) * inchesPerTick
+            lastTicks[i] = ticks[i]
+        }
+        // The first read only establishes where the encoders are
+        if (!isPrimed) {
+            isPrimed = true
+            return
+        }
+
+        val frontLeft = deltas[MecanumKinematics.FRONT_LEFT]
+        val frontRight = deltas[MecanumKinematics.FRONT_RIGHT]
+        val rearLeft = deltas[MecanumKinematics.REAR_LEFT]
+        val rearRight = deltas[MecanumKinematics.REAR_RIGHT]
+
+        // Turning moves the right side forward and the left side backward (counter-clockwise)
+        val right = (frontLeft + rearRight) / 2
+        val left = (frontRight + rearLeft) / 2
+        val spin = (rearRight - frontLeft + frontRight - rearLeft) / 4
+        val turn = spin / inchesPerSpin * 2 * Math.PI
+
+        // Movement in the robot's frame, then in the field's frame at the average heading
+        val dx = MecanumKinematics.unrotatedX(right, left)
+        val dy = MecanumKinematics.unrotatedY(right, left)
+        val heading = state[HEADING] + turn / 2
+        val cos = Math.cos(heading)
+        val sin = Math.sin(heading)
+
+        state[X] += dx * cos - dy * sin
+        state[Y] += dx * sin + dy * cos
+        state[HEADING] = Angle.normalize(state[HEADING] + turn)
+        snapshot.publish(state)
+        updates++
+    }
+
+    /**
+     * Reads the encoder positions into `ticks`, from the channel if there is one.
+     *
+     * @return Whether there are positions that were not integrated yet
+     */
+    private fun readTicks(): Boolean {
+        val channel = encoderChannel
+        if (channel == null) {
+            for (i in motorArray.indices) {
+                ticks[i] = motorArray[i].currentPosition
+            }
+            return true
+        }
+        // The encoders are cumulative, so stale or repeated positions can just wait for new ones
+        val stamp = channel.read(acquired)
+        if (stamp == lastStamp || channel.isStale(stamp)) return false
+        lastStamp = stamp
+        for (i in ticks.indices) {
+            ticks[i] = acquired[i].toInt()
+        }
+        return true
+    }
+
+    /**
+     * Starts updating the pose on a dedicated thread.
+     */
+    fun start() {
+        if (isRunning) return
+        isRunning = true
+        update()
+        thread = Thread({ trackingLoop() }, "PoseEstimator").apply {
+            isDaemon = true
+            start()
+        }
+    }
+
+    /**
+     * Stops the estimator's thread. The last pose remains readable.
+     */
+    fun stop() {
+        isRunning = false
+        thread?.interrupt()
+        thread?.join(100)
+        thread = null
+        RobotLog.ii("PoseEstimator", toString())
+    }
+
+    private fun trackingLoop() {
+        var deadline = System.nanoTime() + periodNanos
+        while (isRunning && !Thread.currentThread().isInterrupted) {
+            var remaining = deadline - System.nanoTime()
+            while (remaining > 0) {
+                LockSupport.parkNanos(remaining)
+                remaining = deadline - System.nanoTime()
+            }
+            update()
+
+            // Do not try to catch up on missed updates; the encoders are cumulative anyway
+            deadline = Math.max(deadline + periodNanos, System.nanoTime())
+        }
+    }
+
+    override fun toString() = "Pose $pose after $updates updates at ${config.odometryFrequency} Hz"
+}
@@ -0,0 +1,209 @@
+package org.firstinspires.ftc.teamcode.drivetrain
+
+import com.qualcomm.robotcore.hardware.DcMotor
+import com.qualcomm.robotcore.util.Range
+import com.qualcomm.robotcore.util.RobotLog
+import org.firstinspires.ftc.teamcode.config.ConfigUser
+import org.firstinspires.ftc.teamcode.io.SensorAcquisition
+import org.firstinspires.ftc.teamcode.util.DoubleSlot
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Closed-loop wheel velocity control on a dedicated thread running at a fixed frequency.
+ * Each cycle measures the velocity of every wheel from its encoder and runs a PIDF loop towards
+ * the latest setpoint published by the OpMode thread.
+ *
+ * Setpoints are fractions of the maximum wheel speed, [-1, 1], so they can be used wherever motor
+ * powers were used. They are handed off without locks: the OpMode thread never waits for the
+ * control thread and vice versa.
+ *
+ * The motors are expected to be in RUN_WITHOUT_ENCODER mode, as this replaces the SDK's own
+ * velocity loop.
+ *
+ * When the encoders are acquired in the background, velocities are measured from their latest
+ * positions and the times they were read, instead of reading the hardware again; a cycle without
+ * new positions changes nothing.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates a controller of the given drive motors, which measures their velocities from
+ *     the given channel of their positions in MecanumKinematics.MOTORS order if there is one
+ */
+class VelocityController(motors: Map<MotorPtr, DcMotor>,
+                         private val config: Config = Config(),
+                         private val encoderChannel: SensorAcquisition.Channel? = null) {
+
+    // CONFIGURATION
+    class Config : ConfigUser("Drivetrain/config.properties") {
+        val useVelocityControl  = file.getBoolean("UseVelocityControl")
+        val controlFrequency    = file.getDouble("ControlFrequency")
+        val kP                  = file.getDouble("VelocityP")
+        val kI                  = file.getDouble("VelocityI")
+        val kD                  = file.getDouble("VelocityD")
+        val kF                  = file.getDouble("VelocityF")
+        val maxWheelSpeed       = file.getDouble("MaxWheelSpeed")
+        val ticksPerRevolution  = file.getInteger("TicksPerRevolution")
+        val inchesPerRevolution = file.getDouble("InchesPerRevolution")
+    }
+
+    private val motorArray: Array<DcMotor> = Array(MecanumKinematics.MOTOR_COUNT) {
+        motors.getValue(MecanumKinematics.MOTORS[it])
+    }
+    private val handoff = DoubleSlot(MecanumKinematics.MOTOR_COUNT)
+    private val maxTicksPerSecond =
+            config.maxWheelSpeed / config.inchesPerRevolution * config.ticksPerRevolution
+    private val periodNanos = (1e9 / config.controlFrequency).toLong()
+
+    // Control state, only touched by the control thread
+    private val setpoints = DoubleArray(MecanumKinematics.MOTOR_COUNT)
+    private val ticks = IntArray(MecanumKinematics.MOTOR_COUNT)
+    private val lastTicks = IntArray(MecanumKinematics.MOTOR_COUNT)
+    private val acquired = DoubleArray(MecanumKinematics.MOTOR_COUNT)
+    private var lastStamp = 0L
+    private val integrals = DoubleArray(MecanumKinematics.MOTOR_COUNT)
+    private val lastErrors = DoubleArray(MecanumKinematics.MOTOR_COUNT)
+
+    // Statistics, written by the control thread only
+    @Volatile var cycles: Long = 0
+        private set
+    @Volatile var overruns: Long = 0
+        private set
+    @Volatile var maxJitterNanos: Long = 0
+        private set
+    @Volatile private var totalJitterNanos: Long = 0
+
+    /**
+     * Average lateness of a cycle compared to its schedule, in nanoseconds.
+     */
+    val meanJitterNanos: Long get() = if (cycles == 0L) 0 else totalJitterNanos / cycles
+
+    @Volatile private var isRunning = false
+    private var thread: Thread? = null
+
+    /**
+     * Publishes new wheel velocity setpoints. Never blocks. Must be called from one thread only.
+     *
+     * @param values     Setpoints indexed by `MotorPtr.ordinal`, [-1, 1]
+     * @param multiplier Multiplier applied to every setpoint
+     */
+    fun command(values: DoubleArray, multiplier: Double = 1.0) = handoff.publish(values, multiplier)
+
+    /**
+     * Starts the control thread.
+     */
+    fun start() {
+        if (isRunning) return
+        isRunning = true
+        thread = Thread({ controlLoop() }, "VelocityController").apply {
+            isDaemon = true
+            priority = Thread.MAX_PRIORITY
+            start()
+        }
+    }
+
+    /**
+     * Stops the control thread and the motors.
+     */
+    fun stop() {
+        isRunning = false
+        thread?.interrupt()
+        thread?.join(100)
+        thread = null
+        for (motor in motorArray) {
+            motor.power = 0.0
+        }
+        RobotLog.ii("VelocityController", toString())
+    }
+
+    private fun controlLoop() {
+        lastStamp = readTicks()
+        System.arraycopy(ticks, 0, lastTicks, 0, ticks.size)
+        var deadline = System.nanoTime() + periodNanos
+
+        while (isRunning && !Thread.currentThread().isInterrupted) {
+            // Park until the deadline; parkNanos may return early
+            var remaining = deadline - System.nanoTime()
+            while (remaining > 0) {
+                LockSupport.parkNanos(remaining)
+                remaining = deadline - System.nanoTime()
+            }
+
+            val now = System.nanoTime()
+            val jitter = now - deadline
+            totalJitterNanos += jitter
+            if (jitter > maxJitterNanos) maxJitterNanos = jitter
+
+            // Without new positions there is no new measurement to correct
+            val stamp = readTicks()
+            if (stamp != lastStamp) {
+                step((stamp - lastStamp) / 1e9)
+                lastStamp = stamp
+            }
+            cycles++
+
+            // Skip the cycles that were missed instead of running them back to back
+            deadline += periodNanos
+            val late = System.nanoTime() - deadline
+            if (late > 0) {
+                overruns++
+                deadline += (late / periodNanos + 1) * periodNanos
+            }
+        }
+    }
+
+    /**
+     * Reads the encoder positions into `ticks`, from the channel if there is one.
+     *
+     * @return When the positions were read, in `System.nanoTime()`
+     */
+    private fun readTicks(): Long {
+        val channel = encoderChannel
+        if (channel != null) {
+            val stamp = channel.read(acquired)
+            // The loop cannot wait for the acquisition to recover; stale positions are read again
+            if (!channel.isStale(stamp)) {
+                for (i in ticks.indices) {
+                    ticks[i] = acquired[i].toInt()
+                }
+                return stamp
+            }
+        }
+        for (i in motorArray.indices) {
+            ticks[i] = motorArray[i].currentPosition
+        }
+        return System.nanoTime()
+    }
+
+    private fun step(dt: Double) {
+        handoff.read(setpoints)
+
+        for (i in motorArray.indices) {
+            val motor = motorArray[i]
+            val measured = (ticks[i] - lastTicks[i]) / dt / maxTicksPerSecond
+            lastTicks[i] = ticks[i]
+
+            val setpoint = setpoints[i]
+            if (setpoint == 0.0) {
+                // Let the brakes hold the wheel instead of fighting encoder noise
+                integrals[i] = 0.0
+                lastErrors[i] = 0.0
+                motor.power = 0.0
+                continue
+            }
+
+            val error = setpoint - measured
+            integrals[i] = Range.clip(integrals[i] + error * dt, -1.0, 1.0)
+            val derivative = (error - lastErrors[i]) / dt
+            lastErrors[i] = error
+
+            motor.power = Range.clip(config.kF * setpoint + config.kP * error +
+                    config.kI * integrals[i] + config.kD * derivative, -1.0, 1.0)
+        }
+    }
+
+    override fun toString() = "$cycles cycles at ${config.controlFrequency} Hz, $overruns overruns, " +
+            "jitter mean ${meanJitterNanos / 1000} us max ${maxJitterNanos / 1000} us"
+}
@@ -20,7 +20,11 @@ import org.locationtech.jts.math.Vector2D
 class AuxJewelKnocker(val telemetry: ITelemetry,
                       val drivetrain: IDrivetrain,
                       override val color: ColorSensor,
-                      override val arm: Servo) : IJewelKnocker {
+                      override val arm: Servo,
+                      /**
+                       * Reads the color sensor once per cycle for everything that needs it.
+                       */
+                      val sensors: SensorHub) : IJewelKnocker {
 
     // CONFIGURATION
     class Config : ConfigUser("JewelKnocker/config.properties") {
@@ -48,7 +52,7 @@ class AuxJewelKnocker(val telemetry: ITelemetry,
 
     override fun lowerArm() {
         arm.position = config.loweredPosition
-        Thread.sleep(config.servoDelay.toLong())
+        Hardware.waiter.sleep(config.servoDelay.toLong())
     }
 
     override fun detect(): AllianceColor? {
@@ -56,18 +60,21 @@ class AuxJewelKnocker(val telemetry: ITelemetry,
         color.enableLed(true)
 
         // Allow values to stabilize
-        Thread.sleep(600)
+        Hardware.waiter.sleep(600)
 
-        val isBlue = color.blue() - color.red() > config.colorThreshold
-        val isRed = color.red() - color.blue() > config.colorThreshold
+        // Every reading below comes from the same transaction
+        sensors.beginCycle()
+        val reading = sensors.current
+        val isBlue = reading.blue - reading.red > config.colorThreshold
+        val isRed = reading.red - reading.blue > config.colorThreshold
 
         return when {
             isBlue && !isRed -> AllianceColor.BLUE
             isRed && !isBlue -> AllianceColor.RED
             else -> {
                 telemetry.error("ColorSensor data is confusing")
-                telemetry.data("RED", color.red())
-                telemetry.data("BLUE", color.blue())
+                telemetry.data("RED", reading.red)
+                telemetry.data("BLUE", reading.blue)
                 null
             }
         }
@@ -86,6 +93,6 @@ class AuxJewelKnocker(val telemetry: ITelemetry,
 
     override fun raiseArm() {
         arm.position = config.raisedPosition
-        Thread.sleep(config.servoDelay.toLong())
+        Hardware.waiter.sleep(config.servoDelay.toLong())
     }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package org.firstinspires.ftc.teamcode.io
+
+import com.qualcomm.robotcore.hardware.DcMotor
+import com.qualcomm.robotcore.hardware.DcMotorSimple
+
+/**
+ * A DcMotor that remembers the last power, mode, direction, target position and zero power
+ * behavior written to it, and skips writes that would not change them.
+ * Reads are passed on to the wrapped motor.
+ *
+ * The SDK applies direction and mode when converting power and target positions, so a change to
+ * either one causes the next power and target position writes to be sent regardless.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+class CachingDcMotor(private val motor: DcMotor,
+                     private val cache: WriteCache) : DcMotor by motor {
+
+    // Last written values, NaN/null/false when unknown
+    private var lastPower: Double = Double.NaN
+    private var lastTarget: Int = 0
+    private var isTargetKnown: Boolean = false
+    private var lastMode: DcMotor.RunMode? = null
+    private var lastDirection: DcMotorSimple.Direction? = null
+    private var lastZeroPowerBehavior: DcMotor.ZeroPowerBehavior? = null
+
+    /**
+     * The last power written through this wrapper, or NaN if unknown. Does not read the hardware.
+     */
+    val commandedPower: Double get() = lastPower
+
+    /**
+     * The last mode written through this wrapper, or null if unknown. Does not read the hardware.
+     */
+    val commandedMode: DcMotor.RunMode? get() = lastMode
+
+    // NaN never equals anything, so the first write is always sent
+    override fun setPower(power: Double) {
+        if (cache.record(!(Math.abs(power - lastPower) < cache.powerEpsilon) ||
+                (power == 0.0 && lastPower != 0.0))) {
+            motor.power = power
+            lastPower = power
+        }
+    }
+
+    override fun setMode(mode: DcMotor.RunMode) {
+        // Resetting encoders is an action rather than a state, so it is always sent
+        if (cache.record(mode != lastMode || mode == DcMotor.RunMode.STOP_AND_RESET_ENCODER)) {
+            motor.mode = mode
+            lastMode = mode
+            invalidateConversions()
+        }
+    }
+
+    override fun setDirection(direction: DcMotorSimple.Direction) {
+        if (cache.record(direction != lastDirection)) {
+            motor.direction = direction
+            lastDirection = direction
+            invalidateConversions()
+        }
+    }
+
+    override fun setTargetPosition(position: Int) {
+        if (cache.record(!isTargetKnown || position != lastTarget)) {
+            motor.targetPosition = position
+            lastTarget = position
+            isTargetKnown = true
+        }
+    }
+
+    override fun setZeroPowerBehavior(zeroPowerBehavior: DcMotor.ZeroPowerBehavior) {
+        if (cache.record(zeroPowerBehavior != lastZeroPowerBehavior)) {
+            motor.zeroPowerBehavior = zeroPowerBehavior
+            lastZeroPowerBehavior = zeroPowerBehavior
+        }
+    }
+
+    override fun resetDeviceConfigurationForOpMode() {
+        motor.resetDeviceConfigurationForOpMode()
+        lastDirection = null
+        invalidateConversions()
+    }
+
+    // Forget the values that the SDK converts using the mode or direction
+    private fun invalidateConversions() {
+        lastPower = Double.NaN
+        isTargetKnown = false
+    }
+
+    override fun toString(): String = "Caching $motor"
+}
@@ -0,0 +1,49 @@
+package org.firstinspires.ftc.teamcode.io
+
+import com.qualcomm.robotcore.hardware.Servo
+
+/**
+ * A Servo that remembers the last position and direction written to it, and skips writes that
+ * would not change them. Reads are passed on to the wrapped servo.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+class CachingServo(private val servo: Servo,
+                   private val cache: WriteCache) : Servo by servo {
+
+    // Last written values, NaN/null when unknown
+    private var lastPosition: Double = Double.NaN
+    private var lastDirection: Servo.Direction? = null
+
+    /**
+     * The last position written through this wrapper, or NaN if unknown. Does not read the hardware.
+     */
+    val commandedPosition: Double get() = lastPosition
+
+    // NaN never compares as close, so the first write is always sent
+    override fun setPosition(position: Double) {
+        if (cache.record(!(Math.abs(position - lastPosition) < cache.positionEpsilon))) {
+            servo.position = position
+            lastPosition = position
+        }
+    }
+
+    override fun setDirection(direction: Servo.Direction) {
+        if (cache.record(direction != lastDirection)) {
+            servo.direction = direction
+            lastDirection = direction
+            lastPosition = Double.NaN
+        }
+    }
+
+    // Changes the meaning of positions, so the next position is always sent
+    override fun scaleRange(min: Double, max: Double) {
+        servo.scaleRange(min, max)
+        lastPosition = Double.NaN
+    }
+
+    override fun toString(): String = "Caching $servo"
+}
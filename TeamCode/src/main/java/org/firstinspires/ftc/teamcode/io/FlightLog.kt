@@ -0,0 +1,195 @@
+package org.firstinspires.ftc.teamcode.io
+
+import com.qualcomm.robotcore.hardware.Gamepad
+import org.firstinspires.ftc.teamcode.io.FlightRecorder.Companion.BUSY
+import org.firstinspires.ftc.teamcode.io.FlightRecorder.Companion.COLOR
+import org.firstinspires.ftc.teamcode.io.FlightRecorder.Companion.CYCLE
+import org.firstinspires.ftc.teamcode.io.FlightRecorder.Companion.ENCODERS
+import org.firstinspires.ftc.teamcode.io.FlightRecorder.Companion.FLAGS
+import org.firstinspires.ftc.teamcode.io.FlightRecorder.Companion.GAMEPAD_1
+import org.firstinspires.ftc.teamcode.io.FlightRecorder.Companion.GAMEPAD_2
+import org.firstinspires.ftc.teamcode.io.FlightRecorder.Companion.MODES
+import org.firstinspires.ftc.teamcode.io.FlightRecorder.Companion.POWERS
+import org.firstinspires.ftc.teamcode.io.FlightRecorder.Companion.SERVOS
+import org.firstinspires.ftc.teamcode.io.FlightRecorder.Companion.TASK
+import org.firstinspires.ftc.teamcode.io.FlightRecorder.Companion.TIMESTAMP
+import org.firstinspires.ftc.teamcode.io.FlightRecorder.Companion.VUMARK
+import java.io.File
+import java.io.IOException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Reads a file written by FlightRecorder.
+ *
+ * Records are numbered in the order they were recorded, starting at 0, and read straight from the
+ * file's bytes without creating an object per record.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Reads the header of the given file
+ * @throws IOException If the file cannot be read or is not a flight recording
+ */
+class FlightLog(val file: File) {
+
+    private val buffer: ByteBuffer = ByteBuffer.wrap(file.readBytes()).order(ByteOrder.LITTLE_ENDIAN)
+
+    private val recordSize: Int
+    private val capacity: Int
+
+    /**
+     * The number of records the recorder wrote, including any that were overwritten.
+     */
+    val written: Long
+
+    /**
+     * The seed of the random numbers used by the run.
+     */
+    val seed: Long
+
+    /**
+     * The class name of the recorded OpMode.
+     */
+    val opModeClass: String
+
+    /**
+     * The name of the color sensor whose readings were recorded.
+     */
+    val colorSensor: String
+
+    /**
+     * The names of the motors and servos, in the order of their values in the records.
+     */
+    val motorNames: List<String>
+    val servoNames: List<String>
+
+    init {
+        if (buffer.capacity() < FlightRecorder.HEADER_SIZE || buffer.getInt(0) != FlightRecorder.FORMAT) {
+            throw IOException("$file is not a flight recording")
+        }
+        recordSize = buffer.getInt(4)
+        capacity = buffer.getInt(8)
+        written = buffer.getLong(FlightRecorder.HEADER_WRITTEN)
+        seed = buffer.getLong(FlightRecorder.HEADER_SEED)
+
+        buffer.position(FlightRecorder.HEADER_NAMES)
+        opModeClass = getName()
+        colorSensor = getName()
+        motorNames = List(buffer.int) { getName() }
+        servoNames = List(buffer.int) { getName() }
+    }
+
+    private fun getName(): String {
+        val chars = CharArray(buffer.get().toInt() and 0xFF)
+        for (i in chars.indices) chars[i] = (buffer.get().toInt() and 0xFF).toChar()
+        return String(chars)
+    }
+
+    /**
+     * Whether the file wrapped around, so that the first records of the run were overwritten.
+     */
+    val isTruncated: Boolean get() = written > capacity
+
+    /**
+     * The number of records in the file.
+     */
+    val size: Int get() = Math.min(written, capacity.toLong()).toInt()
+
+    // Position of the given record in the file; the oldest record comes first
+    private fun base(index: Int): Int {
+        val sequence = if (isTruncated) written - capacity + index else index.toLong()
+        return FlightRecorder.HEADER_SIZE + (sequence % capacity).toInt() * recordSize
+    }
+
+    fun cycle(index: Int): Long = buffer.getLong(base(index) + CYCLE)
+
+    fun timestampNanos(index: Int): Long = buffer.getLong(base(index) + TIMESTAMP)
+
+    fun flags(index: Int): Int = buffer.getInt(base(index) + FLAGS)
+
+    fun hasFlag(index: Int, flag: Int): Boolean = flags(index) and flag != 0
+
+    /**
+     * @return The commanded power of the given motor, or NaN if unknown
+     */
+    fun power(index: Int, motor: Int): Double = buffer.getFloat(base(index) + POWERS + motor * 4).toDouble()
+
+    /**
+     * @return The ordinal of the commanded RunMode of the given motor, or -1 if unknown
+     */
+    fun mode(index: Int, motor: Int): Int = buffer.get(base(index) + MODES + motor).toInt()
+
+    /**
+     * @return The commanded position of the given servo, or NaN if unknown
+     */
+    fun servoPosition(index: Int, servo: Int): Double =
+            buffer.getFloat(base(index) + SERVOS + servo * 4).toDouble()
+
+    /**
+     * @return The encoder position of the drive motor with the given MotorPtr ordinal
+     */
+    fun encoder(index: Int, motor: Int): Int = buffer.getInt(base(index) + ENCODERS + motor * 4)
+
+    /**
+     * @return Whether the drive motor with the given MotorPtr ordinal was busy
+     */
+    fun isBusy(index: Int, motor: Int): Boolean = buffer.get(base(index) + BUSY).toInt() and (1 shl motor) != 0
+
+    /**
+     * @return Red, green, blue or alpha (0 to 3) of the color sensor
+     */
+    fun color(index: Int, channel: Int): Int = buffer.getShort(base(index) + COLOR + channel * 2).toInt()
+
+    /**
+     * @return The ordinal of the RelicRecoveryVuMark read in the cycle, or -1 if none
+     */
+    fun vuMark(index: Int): Int = buffer.get(base(index) + VUMARK).toInt()
+
+    /**
+     * @return The task being performed, or an empty string if none
+     */
+    fun task(index: Int): String {
+        val base = base(index) + TASK
+        val length = buffer.get(base).toInt()
+        val chars = CharArray(length) { (buffer.get(base + 1 + it).toInt() and 0xFF).toChar() }
+        return String(chars)
+    }
+
+    /**
+     * Sets the sticks, triggers and buttons of the given gamepad (1 or 2) as they were recorded.
+     */
+    fun copyGamepad(index: Int, number: Int, into: Gamepad) {
+        val offset = base(index) + if (number == 1) GAMEPAD_1 else GAMEPAD_2
+        with(into) {
+            left_stick_x = buffer.getFloat(offset)
+            left_stick_y = buffer.getFloat(offset + 4)
+            right_stick_x = buffer.getFloat(offset + 8)
+            right_stick_y = buffer.getFloat(offset + 12)
+            left_trigger = buffer.getFloat(offset + 16)
+            right_trigger = buffer.getFloat(offset + 20)
+            // Bits in the order FlightRecorder writes them
+            val buttons = buffer.getInt(offset + 24)
+            a = buttons and 0x1 != 0
+            b = buttons and 0x2 != 0
+            x = buttons and 0x4 != 0
+            y = buttons and 0x8 != 0
+            dpad_up = buttons and 0x10 != 0
+            dpad_down = buttons and 0x20 != 0
+            dpad_left = buttons and 0x40 != 0
+            dpad_right = buttons and 0x80 != 0
+            left_bumper = buttons and 0x100 != 0
+            right_bumper = buttons and 0x200 != 0
+            left_stick_button = buttons and 0x400 != 0
+            right_stick_button = buttons and 0x800 != 0
+            start = buttons and 0x1000 != 0
+            back = buttons and 0x2000 != 0
+            guide = buttons and 0x4000 != 0
+        }
+    }
+
+    override fun toString() = "${file.name}: $opModeClass, $size records" +
+            if (isTruncated) " (truncated)" else ""
+}
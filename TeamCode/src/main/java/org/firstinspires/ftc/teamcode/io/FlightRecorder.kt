@@ -0,0 +1,404 @@
+package org.firstinspires.ftc.teamcode.io
+
+import com.qualcomm.robotcore.eventloop.opmode.OpMode
+import com.qualcomm.robotcore.hardware.DcMotor
+import com.qualcomm.robotcore.hardware.Gamepad
+import com.qualcomm.robotcore.hardware.Servo
+import com.qualcomm.robotcore.util.RobotLog
+import org.firstinspires.ftc.robotcore.external.navigation.RelicRecoveryVuMark
+import org.firstinspires.ftc.teamcode.config.ConfigFile
+import org.firstinspires.ftc.teamcode.config.ConfigUser
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.text.SimpleDateFormat
+import java.util.Date
+import java.util.Locale
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Records the state of the robot in every control cycle, so that a run can be examined afterwards.
+ *
+ * Each record is a fixed-size binary entry (see the offsets below) with the commanded motor powers
+ * and modes, the drive encoder positions and busy flags, the commanded servo positions, the color
+ * readings, the VuMark read, both gamepads, the current task and timing. Records are put into a preallocated ring buffer on the
+ * OpMode thread and copied by a background thread into a memory-mapped file beside the config
+ * directory, which keeps the latest `fileCapacity` records. Only the latest `filesKept` recordings
+ * are kept in the directory.
+ *
+ * Recording never blocks and never reads the hardware: powers and positions are the last values
+ * written through the write cache, and sensor values are those already read in the cycle. When the
+ * ring buffer is full, records are dropped. When recording takes longer than the budget on
+ * average, only every 2nd, 4th, ... cycle is recorded, until it is fast enough again.
+ *
+ * File layout (little-endian): a header of HEADER_SIZE bytes with FORMAT, RECORD_SIZE, the file
+ * capacity in records, the number of records written so far (the latest ones are at
+ * `index % capacity`), the random seed of the run and the names of the OpMode class, the color
+ * sensor, the motors and the servos; then the records. FlightLog reads it back.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates a recorder of the given devices by name, the given hub's sensors (whose color
+ *     sensor has the given name) and the gamepads of the given OpMode, which starts recording with
+ *     `start()`. The drive motors come first, in MotorPtr order, as the encoder values are theirs.
+ */
+class FlightRecorder(private val motors: Map<String, DcMotor>,
+                     private val servos: Map<String, Servo>,
+                     private val sensors: SensorHub,
+                     private val colorSensor: String,
+                     private val opMode: OpMode,
+                     private val config: Config = Config()) {
+
+    // CONFIGURATION
+    class Config : ConfigUser("Hardware/config.properties") {
+        val useFlightRecorder = file.getBoolean("UseFlightRecorder")
+        // Records kept in the file
+        val fileCapacity = file.getInteger("FlightRecorderCapacity")
+        // Recordings kept in the directory, including the new one; older ones are deleted
+        val filesKept = file.getInteger("FlightRecorderFilesKept")
+        // Average microseconds a record may take before cycles are skipped
+        val budget = file.getDouble("FlightRecorderBudget")
+        // Relative to the directory that holds the config directory
+        val directory = file["FlightRecorderDirectory"]
+    }
+
+    companion object {
+        const val FORMAT = 0x464C5401
+        const val HEADER_SIZE = 4096
+        const val RECORD_SIZE = 256
+        const val MAX_MOTORS = 8
+        const val MAX_SERVOS = 8
+        const val TASK_LENGTH = 47
+
+        // Offsets within the header
+        const val HEADER_WRITTEN = 16   // long: number of records written
+        const val HEADER_SEED = 24      // long: random seed of the run
+        const val HEADER_NAMES = 32     // byte length, ASCII: OpMode class, color sensor; int count
+                                        //   and names of motors; int count and names of servos
+
+        // Offsets within a record
+        const val CYCLE = 0             // long: number of the control cycle
+        const val TIMESTAMP = 8         // long: System.nanoTime() when recorded
+        const val PERIOD = 16           // int: microseconds since the previous recorded cycle
+        const val COST = 20             // int: microseconds the previous record took
+        const val POWERS = 24           // float × MAX_MOTORS: commanded powers, NaN if unknown
+        const val MODES = 56            // byte × MAX_MOTORS: RunMode ordinals, -1 if unknown
+        const val ENCODERS = 64         // int × 4: drive encoder positions by MotorPtr ordinal
+        const val SERVOS = 80           // float × MAX_SERVOS: commanded positions, NaN if unknown
+        const val COLOR = 112           // short × 4: red, green, blue, alpha
+        const val GAMEPAD_1 = 120       // float × 6 (sticks, triggers), int buttons
+        const val GAMEPAD_2 = 148
+        const val FLAGS = 176           // int: FLAG_*
+        const val TASK = 180            // byte length, ASCII: name of the current task
+        const val BUSY = 228            // byte: drive motors busy, bit by MotorPtr ordinal
+        const val VUMARK = 229          // byte: RelicRecoveryVuMark ordinal read, -1 if none
+
+        const val FLAG_ENCODERS = 1     // Encoder positions were read in the cycle
+        const val FLAG_COLOR = 2        // Color was read in the cycle
+        const val FLAG_DROPPED = 4      // Records were dropped before this one
+        const val FLAG_SKIPPING = 8     // Cycles are being skipped to stay within the budget
+        const val FLAG_BUSY = 16        // Busy flags were read in the cycle
+
+        // Records held in memory for the writer thread
+        private const val RING_CAPACITY = 256
+        private const val MAX_SKIP = 64
+        private const val WRITE_PERIOD_NANOS = 50_000_000L
+    }
+
+    // Only devices behind the write cache know what was last written to them
+    private val motorArray = motors.values.map { it as? CachingDcMotor }.toTypedArray()
+    private val servoArray = servos.values.map { it as? CachingServo }.toTypedArray()
+
+    private val ring = ByteBuffer.allocateDirect(RING_CAPACITY * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN)
+    // Sequence of the next record to fill, and of the next record to write to the file
+    private val head = AtomicLong()
+    private val tail = AtomicLong()
+
+    private val encoders = IntArray(4)
+    private val color = IntArray(4)
+    private val busy = BooleanArray(4)
+
+    /**
+     * The name of the task being performed, recorded with every cycle; empty if none.
+     */
+    @Volatile var task: String = ""
+
+    /**
+     * The VuMark read in the current cycle, if any; recorded once and then cleared.
+     */
+    var vuMark: RelicRecoveryVuMark? = null
+
+    /**
+     * The seed of the random numbers used by the run, so that a replay makes the same choices.
+     */
+    var seed: Long = 0
+        set(value) {
+            field = value
+            mapped?.putLong(HEADER_SEED, value)
+        }
+
+    private var cycle = 0L
+    private var lastTimestamp = 0L
+    private var lastCost = 0L
+    private var averageCost = 0.0
+    private var skip = 1
+    private var hasDropped = false
+    private val budgetNanos = config.budget * 1000
+
+    var recorded: Long = 0
+        private set
+    var dropped: Long = 0
+        private set
+    var skipped: Long = 0
+        private set
+
+    private var file: File? = null
+    private var mapped: MappedByteBuffer? = null
+    @Volatile private var writer: Thread? = null
+    private var written = 0L
+
+    init {
+        require(motorArray.size <= MAX_MOTORS && servoArray.size <= MAX_SERVOS) {
+            "At most $MAX_MOTORS motors and $MAX_SERVOS servos can be recorded"
+        }
+    }
+
+    /**
+     * Creates the file of this run, named after the OpMode, and starts the thread that writes to it.
+     * Deletes the oldest recordings first, so that the directory keeps `filesKept` of them.
+     */
+    fun start() {
+        val name = opMode.javaClass.simpleName
+        val directory = File(File(ConfigFile.CONFIG_PATH).parentFile, config.directory)
+        directory.mkdirs()
+        prune(directory, Math.max(config.filesKept - 1, 0))
+        val stamp = SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(Date())
+        val newFile = File(directory, "$name-$stamp.bin")
+
+        val size = HEADER_SIZE + config.fileCapacity.toLong() * RECORD_SIZE
+        val buffer = RandomAccessFile(newFile, "rw").use { access ->
+            access.setLength(size)
+            // The mapping stays valid after the channel is closed
+            access.channel.map(FileChannel.MapMode.READ_WRITE, 0, size)
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN)
+        writeHeader(buffer)
+        file = newFile
+        mapped = buffer
+
+        writer = Thread({
+            while (!Thread.currentThread().isInterrupted) {
+                if (drain() == 0) LockSupport.parkNanos(WRITE_PERIOD_NANOS)
+            }
+        }, "FlightRecorder").apply {
+            isDaemon = true
+            start()
+        }
+    }
+
+    /**
+     * Deletes all but the given number of the most recent recordings in the given directory.
+     */
+    private fun prune(directory: File, keep: Int) {
+        val recordings = directory.listFiles { file -> file.isFile && file.name.endsWith(".bin") }
+                ?: return
+        recordings.sortedByDescending { it.lastModified() }.drop(keep).forEach {
+            if (!it.delete()) RobotLog.ww("FlightRecorder", "Could not delete ${it.name}")
+        }
+    }
+
+    private fun writeHeader(buffer: ByteBuffer) {
+        buffer.putInt(0, FORMAT)
+        buffer.putInt(4, RECORD_SIZE)
+        buffer.putInt(8, config.fileCapacity)
+        buffer.putLong(HEADER_WRITTEN, 0)
+        buffer.putLong(HEADER_SEED, seed)
+        buffer.position(HEADER_NAMES)
+        putName(buffer, opMode.javaClass.name)
+        putName(buffer, colorSensor)
+        buffer.putInt(motors.size)
+        motors.keys.forEach { putName(buffer, it) }
+        buffer.putInt(servos.size)
+        servos.keys.forEach { putName(buffer, it) }
+    }
+
+    private fun putName(buffer: ByteBuffer, name: String) {
+        buffer.put(name.length.toByte())
+        for (c in name) buffer.put(c.toByte())
+    }
+
+    /**
+     * Records the current state as one control cycle. Called from the OpMode thread at the end of
+     * every cycle; never blocks.
+     */
+    fun record() {
+        if (writer == null) return
+        cycle++
+        if (cycle % skip != 0L) {
+            skipped++
+            return
+        }
+
+        val start = System.nanoTime()
+        val sequence = head.get()
+        if (sequence - tail.get() >= RING_CAPACITY) {
+            dropped++
+            hasDropped = true
+            return
+        }
+        val base = (sequence % RING_CAPACITY).toInt() * RECORD_SIZE
+        fill(base, start)
+        // Makes the record visible to the writer thread
+        head.lazySet(sequence + 1)
+        recorded++
+
+        // Skip cycles while recording is over budget on average
+        lastCost = System.nanoTime() - start
+        // A single slow record, such as the first one, should not start skipping by itself
+        averageCost = averageCost * 0.9 + Math.min(lastCost.toDouble(), budgetNanos * 4) * 0.1
+        if (averageCost > budgetNanos && skip < MAX_SKIP) {
+            skip *= 2
+        } else if (averageCost < budgetNanos / 4 && skip > 1) {
+            skip /= 2
+        }
+    }
+
+    private fun fill(base: Int, timestamp: Long) {
+        ring.putLong(base + CYCLE, cycle)
+        ring.putLong(base + TIMESTAMP, timestamp)
+        ring.putInt(base + PERIOD, if (lastTimestamp == 0L) 0 else ((timestamp - lastTimestamp) / 1000).toInt())
+        ring.putInt(base + COST, (lastCost / 1000).toInt())
+        lastTimestamp = timestamp
+
+        for (i in 0 until MAX_MOTORS) {
+            val motor = if (i < motorArray.size) motorArray[i] else null
+            if (motor != null) {
+                ring.putFloat(base + POWERS + i * 4, motor.commandedPower.toFloat())
+                ring.put(base + MODES + i, (motor.commandedMode?.ordinal ?: -1).toByte())
+            } else {
+                ring.putFloat(base + POWERS + i * 4, Float.NaN)
+                ring.put(base + MODES + i, -1)
+            }
+        }
+        for (i in 0 until MAX_SERVOS) {
+            val servo = if (i < servoArray.size) servoArray[i] else null
+            ring.putFloat(base + SERVOS + i * 4,
+                    if (servo != null) servo.commandedPosition.toFloat() else Float.NaN)
+        }
+
+        var flags = 0
+        val snapshot = sensors.latest
+        if (snapshot != null && snapshot.copyPositionsIfRead(encoders)) flags = flags or FLAG_ENCODERS
+        if (snapshot != null && snapshot.copyColorIfRead(color)) flags = flags or FLAG_COLOR
+        if (snapshot != null && snapshot.copyBusyIfRead(busy)) flags = flags or FLAG_BUSY
+        var busyBits = 0
+        for (i in 0 until 4) {
+            ring.putInt(base + ENCODERS + i * 4, encoders[i])
+            ring.putShort(base + COLOR + i * 2, color[i].toShort())
+            if (busy[i]) busyBits = busyBits or (1 shl i)
+        }
+        ring.put(base + BUSY, busyBits.toByte())
+        ring.put(base + VUMARK, (vuMark?.ordinal ?: -1).toByte())
+        vuMark = null
+
+        putGamepad(base + GAMEPAD_1, opMode.gamepad1)
+        putGamepad(base + GAMEPAD_2, opMode.gamepad2)
+
+        if (hasDropped) flags = flags or FLAG_DROPPED
+        if (skip > 1) flags = flags or FLAG_SKIPPING
+        hasDropped = false
+        ring.putInt(base + FLAGS, flags)
+
+        val name = task
+        val length = Math.min(name.length, TASK_LENGTH)
+        ring.put(base + TASK, length.toByte())
+        for (i in 0 until length) {
+            ring.put(base + TASK + 1 + i, name[i].toByte())
+        }
+    }
+
+    private fun putGamepad(offset: Int, gamepad: Gamepad?) {
+        if (gamepad == null) {
+            for (i in 0 until 7) ring.putInt(offset + i * 4, 0)
+            return
+        }
+        with(gamepad) {
+            ring.putFloat(offset, left_stick_x)
+            ring.putFloat(offset + 4, left_stick_y)
+            ring.putFloat(offset + 8, right_stick_x)
+            ring.putFloat(offset + 12, right_stick_y)
+            ring.putFloat(offset + 16, left_trigger)
+            ring.putFloat(offset + 20, right_trigger)
+            // Bits from the lowest: a, b, x, y, dpad up, down, left, right, left bumper, right
+            //   bumper, left stick button, right stick button, start, back, guide
+            var buttons = 0
+            if (a) buttons = buttons or 0x1
+            if (b) buttons = buttons or 0x2
+            if (x) buttons = buttons or 0x4
+            if (y) buttons = buttons or 0x8
+            if (dpad_up) buttons = buttons or 0x10
+            if (dpad_down) buttons = buttons or 0x20
+            if (dpad_left) buttons = buttons or 0x40
+            if (dpad_right) buttons = buttons or 0x80
+            if (left_bumper) buttons = buttons or 0x100
+            if (right_bumper) buttons = buttons or 0x200
+            if (left_stick_button) buttons = buttons or 0x400
+            if (right_stick_button) buttons = buttons or 0x800
+            if (start) buttons = buttons or 0x1000
+            if (back) buttons = buttons or 0x2000
+            if (guide) buttons = buttons or 0x4000
+            ring.putInt(offset + 24, buttons)
+        }
+    }
+
+    // Copies every complete record into the file; returns how many
+    private fun drain(): Int {
+        val buffer = mapped ?: return 0
+        val source = ring.duplicate()
+        val capacity = config.fileCapacity
+        var count = 0
+        while (true) {
+            val sequence = tail.get()
+            if (sequence >= head.get()) break
+            val base = (sequence % RING_CAPACITY).toInt() * RECORD_SIZE
+            source.limit(base + RECORD_SIZE)
+            source.position(base)
+            buffer.position(HEADER_SIZE + (written % capacity).toInt() * RECORD_SIZE)
+            buffer.put(source)
+            written++
+            // Frees the record for the OpMode thread
+            tail.lazySet(sequence + 1)
+            count++
+        }
+        if (count > 0) buffer.putLong(HEADER_WRITTEN, written)
+        return count
+    }
+
+    /**
+     * Stops the writer thread, writes the remaining records and flushes the file. Called from the
+     * OpMode thread, so it waits for the writer only briefly.
+     */
+    fun stop() {
+        val thread = writer ?: return
+        writer = null
+        thread.interrupt()
+        thread.join(100)
+        // Only one thread may drain at a time
+        if (thread.isAlive) {
+            RobotLog.ww("FlightRecorder", "Writer did not stop; the last records may be missing")
+        } else {
+            drain()
+        }
+        mapped?.force()
+        RobotLog.ii("FlightRecorder", "$this to $file")
+    }
+
+    override fun toString() = "$recorded records, $dropped dropped, $skipped cycles skipped"
+}
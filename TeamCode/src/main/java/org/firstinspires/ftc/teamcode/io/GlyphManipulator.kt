@@ -86,7 +86,7 @@ class GlyphManipulator(
 
     override fun placeGlyph() {
         bucketPourPos = config.pourIntermediate
-        Thread.sleep((config.pourTime * config.pourIntermediate).toLong() + 100)
+        Hardware.waiter.sleep((config.pourTime * config.pourIntermediate).toLong() + 100)
         bucketPourPos = config.pourMax
     }
 
@@ -1,12 +1,23 @@
 package org.firstinspires.ftc.teamcode.io
 
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode
 import com.qualcomm.robotcore.eventloop.opmode.OpMode
+import com.qualcomm.robotcore.hardware.DcMotor
 import com.qualcomm.robotcore.hardware.DcMotorSimple
+import com.qualcomm.robotcore.hardware.HardwareMap
 import com.qualcomm.robotcore.hardware.Servo
+import com.qualcomm.robotcore.util.RobotLog
 import org.firstinspires.ftc.teamcode.drivetrain.Drivetrain
 import org.firstinspires.ftc.teamcode.drivetrain.IDrivetrain
+import org.firstinspires.ftc.teamcode.drivetrain.MecanumKinematics
+import org.firstinspires.ftc.teamcode.drivetrain.MotorPtr
+import org.firstinspires.ftc.teamcode.drivetrain.PoseEstimator
+import org.firstinspires.ftc.teamcode.drivetrain.VelocityController
+import org.firstinspires.ftc.teamcode.telemetry.FtcTelemetrySink
 import org.firstinspires.ftc.teamcode.telemetry.ITelemetry
 import org.firstinspires.ftc.teamcode.telemetry.Telemetry
+import org.firstinspires.ftc.teamcode.util.AsyncLog
+import org.firstinspires.ftc.teamcode.util.Clock
 
 /**
  * Declares modules and hardware necessary to run both Autonomous and TeleOp.
@@ -28,56 +39,261 @@ object Hardware {
     lateinit var glypher: GlyphManipulator
     lateinit var knocker: IJewelKnocker
 
+    /**
+     * Drops redundant motor and servo writes. Its counters show how much bus traffic is saved.
+     */
+    lateinit var writeCache: WriteCache
+
+    /**
+     * The shared primitive for blocking waits, which ends early when the OpMode is asked to stop.
+     */
+    lateinit var waiter: Waiter
+
+    /**
+     * Reads the drivetrain encoders and the jewel color sensor once per control cycle.
+     */
+    lateinit var sensors: SensorHub
+
+    /**
+     * Reads the drivetrain encoders and the jewel color sensor in the background, or null if
+     * disabled.
+     */
+    var acquisition: SensorAcquisition? = null
+
+    /**
+     * The drivetrain's closed-loop velocity control thread, or null if it is disabled.
+     */
+    var velocityController: VelocityController? = null
+
+    /**
+     * Tracks the robot's pose from the drivetrain encoders, or null if odometry is disabled.
+     */
+    var poseEstimator: PoseEstimator? = null
+
+    /**
+     * Records the commanded outputs, sensor readings and gamepads of every control cycle to a file,
+     * or null if disabled.
+     */
+    var recorder: FlightRecorder? = null
+
+    /**
+     * The clock of the waiter created by `init()`; replaced while a recorded run is replayed or
+     * the robot is simulated. While it is not REAL, `init()` starts no background threads, which
+     * run in real time, and no recorder; the replay or simulation updates the pose instead.
+     */
+    var clock: Clock = Clock.REAL
+
+    /**
+     * Set while a recorded run is replayed, and called at the end of every control cycle like the
+     * recorder.
+     */
+    var replayHook: (() -> Unit)? = null
+
+    // Cycles are only counted once init() has finished, when the recorder has started
+    private var isInitialized = false
+
+    // What the last init() got to create, for shutdown() to report on; lateinit properties that
+    //   were never assigned cannot be checked in this version of Kotlin
+    private var createdTelemetry: ITelemetry? = null
+    private var createdWriteCache: WriteCache? = null
+    private var createdSensors: SensorHub? = null
+    private var isWriteCacheUsed: Boolean = true
+
+    // Devices obtained through these are wrapped by writeCache when it is enabled
+    private fun HardwareMap.cachedMotor(name: String): DcMotor =
+            dcMotor.get(name).let { if (isWriteCacheUsed) writeCache.wrap(it) else it }
+
+    private fun HardwareMap.cachedServo(name: String): Servo =
+            servo.get(name).let { if (isWriteCacheUsed) writeCache.wrap(it) else it }
+
     // LATEINIT - OpModes MUST initialize ASAP using this function, otherwise expect NPEs!
     fun init(_opMode: OpMode, _motorPower: Double) {
 
         // Assign to lateinit (has to stay above any other initialization procedure)
         opMode = _opMode
         motorPower = _motorPower
+        isInitialized = false
+        val isVirtualTime = clock !== Clock.REAL
 
-        telemetry = Telemetry(opMode.telemetry)
+        createdWriteCache = null
+        createdSensors = null
+        telemetry = Telemetry(FtcTelemetrySink(opMode.telemetry), clock)
+        createdTelemetry = telemetry
 
         try {
+            val cacheConfig = WriteCache.Config()
+            isWriteCacheUsed = cacheConfig.useWriteCache
+            writeCache = WriteCache(cacheConfig.powerEpsilon, cacheConfig.positionEpsilon)
+            createdWriteCache = writeCache
+
+            telemetry.maxUpdateRate = Telemetry.Config().maxUpdateRate
+            AsyncLog.minLevel = AsyncLog.Config().logLevel
+            AsyncLog.start()
+
+            waiter = Waiter(clock) { (opMode as? LinearOpMode)?.isStopRequested ?: false }
+
             with(opMode.hardwareMap) {
                 // Mecanum wheels
-                drivetrain = Drivetrain(motorPower, mapOf(
-                        IDrivetrain.MotorPtr.FRONT_LEFT to dcMotor.get("FrontLeft"),
-                        IDrivetrain.MotorPtr.FRONT_RIGHT to dcMotor.get("FrontRight"),
-                        IDrivetrain.MotorPtr.REAR_LEFT to dcMotor.get("RearLeft"),
-                        IDrivetrain.MotorPtr.REAR_RIGHT to dcMotor.get("RearRight")
-                ))
+                val driveMotors = mapOf(
+                        MotorPtr.FRONT_LEFT to cachedMotor("FrontLeft"),
+                        MotorPtr.FRONT_RIGHT to cachedMotor("FrontRight"),
+                        MotorPtr.REAR_LEFT to cachedMotor("RearLeft"),
+                        MotorPtr.REAR_RIGHT to cachedMotor("RearRight")
+                )
+                val jewelSensor = colorSensor.get("JewelSensor")
+
+                // Background acquisition, with the slow I2C color sensor on its own thread
+                val acquisitionConfig = SensorAcquisition.Config()
+                var encoderChannel: SensorAcquisition.Channel? = null
+                var colorChannel: SensorAcquisition.Channel? = null
+                if (acquisitionConfig.useSensorAcquisition && !isVirtualTime) {
+                    val newAcquisition = SensorAcquisition()
+                    val encoderMotors = MecanumKinematics.MOTORS.map { driveMotors.getValue(it) }
+                    with(acquisitionConfig) {
+                        encoderChannel = newAcquisition.register("DriveEncoders",
+                                MecanumKinematics.MOTOR_COUNT, encoderPeriod,
+                                (encoderPeriod * staleAfterPeriods).toLong(), "Encoders") { out ->
+                            for (i in encoderMotors.indices) {
+                                out[i] = encoderMotors[i].currentPosition.toDouble()
+                            }
+                        }
+                        colorChannel = newAcquisition.register("JewelSensor", 4, colorPeriod,
+                                (colorPeriod * staleAfterPeriods).toLong(), "I2C") { out ->
+                            out[0] = jewelSensor.red().toDouble()
+                            out[1] = jewelSensor.green().toDouble()
+                            out[2] = jewelSensor.blue().toDouble()
+                            out[3] = jewelSensor.alpha().toDouble()
+                        }
+                    }
+                    acquisition = newAcquisition
+                }
+
+                sensors = SensorHub(driveMotors, jewelSensor, encoderChannel, colorChannel, clock = clock)
+                createdSensors = sensors
+                // Every poll of a wait starts a new cycle, and sends telemetry that is due
+                waiter.beforePoll = {
+                    endCycle()
+                    sensors.beginCycle()
+                    telemetry.flushIfDue()
+                }
+
+                val controllerConfig = VelocityController.Config()
+                velocityController = if (controllerConfig.useVelocityControl && !isVirtualTime)
+                    VelocityController(driveMotors, controllerConfig, encoderChannel) else null
+
+                drivetrain = Drivetrain(motorPower, driveMotors, waiter, velocityController, sensors)
+                // Start after the drivetrain has reset the encoders
+                velocityController?.start()
+                acquisition?.start()
+
+                // In virtual time, the replay or simulation updates the pose instead
+                val odometryConfig = PoseEstimator.Config()
+                poseEstimator = if (odometryConfig.useOdometry)
+                    PoseEstimator(driveMotors, odometryConfig, encoderChannel).apply { if (!isVirtualTime) start() } else null
 
                 // Reverse direction of FlywheelRight motor & RectifierRight due to symmetry
                 // Reverse BEFORE initializing GlyphManipulator
-                dcMotor.get("FlywheelRight").direction = DcMotorSimple.Direction.REVERSE
-                servo.get("RectifierRight").direction = Servo.Direction.REVERSE
-                servo.get("OffsideBucketPour").direction = Servo.Direction.REVERSE
+                val flywheelLeft = cachedMotor("FlywheelLeft")
+                val flywheelRight = cachedMotor("FlywheelRight")
+                val bucketPour = cachedServo("BucketPour")
+                val rectifierLeft = cachedServo("RectifierLeft")
+                val rectifierRight = cachedServo("RectifierRight")
+                val offsideBucketPour = cachedServo("OffsideBucketPour")
+                flywheelRight.direction = DcMotorSimple.Direction.REVERSE
+                rectifierRight.direction = Servo.Direction.REVERSE
+                offsideBucketPour.direction = Servo.Direction.REVERSE
 
                 // GlyphManipulator instance
                 glypher = GlyphManipulator(
-                        collectorLeft = dcMotor.get("FlywheelLeft"),
-                        collectorRight = dcMotor.get("FlywheelRight"),
-                        bucketPour = servo.get("BucketPour"),
-                        offsideBucketPour = servo.get("OffsideBucketPour"),
+                        collectorLeft = flywheelLeft,
+                        collectorRight = flywheelRight,
+                        bucketPour = bucketPour,
+                        offsideBucketPour = offsideBucketPour,
                         glyphRectifiers = setOf(
-                                servo.get("RectifierLeft"),
-                                servo.get("RectifierRight")
+                                rectifierLeft,
+                                rectifierRight
                         ))
 
+                val jewelArm = cachedServo("JewelArm")
                 knocker = AuxJewelKnocker(
                         telemetry,
                         drivetrain,
-                        color = colorSensor.get("JewelSensor"),
-                        arm = servo.get("JewelArm"))
+                        color = jewelSensor,
+                        arm = jewelArm,
+                        sensors = sensors)
+
+                // Records the same device instances that everything else writes through
+                val recorderConfig = FlightRecorder.Config()
+                recorder = if (recorderConfig.useFlightRecorder && !isVirtualTime) FlightRecorder(
+                        motors = mapOf(
+                                "FrontLeft" to driveMotors.getValue(MotorPtr.FRONT_LEFT),
+                                "FrontRight" to driveMotors.getValue(MotorPtr.FRONT_RIGHT),
+                                "RearLeft" to driveMotors.getValue(MotorPtr.REAR_LEFT),
+                                "RearRight" to driveMotors.getValue(MotorPtr.REAR_RIGHT),
+                                "FlywheelLeft" to flywheelLeft,
+                                "FlywheelRight" to flywheelRight),
+                        servos = mapOf(
+                                "BucketPour" to bucketPour,
+                                "OffsideBucketPour" to offsideBucketPour,
+                                "RectifierLeft" to rectifierLeft,
+                                "RectifierRight" to rectifierRight,
+                                "JewelArm" to jewelArm),
+                        sensors = sensors,
+                        colorSensor = "JewelSensor",
+                        opMode = opMode,
+                        config = recorderConfig
+                ).apply { start() } else null
             }
 
         } catch (exc: Exception) {
             telemetry.fatal(
                     "Failed to initialize hardware: ${exc.message ?: "the robot, too, doesn't know why"}")
             opMode.requestOpModeStop()
+            // Nothing started so far may keep driving the robot once the OpMode has died
+            shutdown()
             throw RuntimeException(exc)
         }
 
+        isInitialized = true
+    }
+
+    /**
+     * Ends a control cycle for the recorder or a replay. Called before every poll of the waiter and
+     * at the start of every TeleOp loop, while the readings of the cycle are still in `sensors`.
+     */
+    fun endCycle() {
+        if (!isInitialized) return
+        recorder?.record()
+        replayHook?.invoke()
+    }
+
+    /**
+     * Stops the background services started by `init()`, including when it failed part way.
+     * Both AutonomousBase and TeleOpMain should call this when the OpModes end.
+     */
+    fun shutdown() {
+        velocityController?.stop()
+        velocityController = null
+        poseEstimator?.stop()
+        poseEstimator = null
+        acquisition?.stop()
+        acquisition = null
+        recorder?.stop()
+        recorder = null
+        isInitialized = false
+
+        // Report how much bus traffic was saved during the match
+        createdWriteCache?.let { RobotLog.ii("WriteCache", it.toString()) }
+        createdSensors?.let { RobotLog.ii("SensorHub", it.toString()) }
+        createdTelemetry?.let {
+            RobotLog.ii("Telemetry", "${it.suppressedUpdates} updates suppressed")
+            // Send whatever is still waiting for the next update
+            it.flush()
+        }
+        createdWriteCache = null
+        createdSensors = null
+        createdTelemetry = null
+        AsyncLog.stop()
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+package org.firstinspires.ftc.teamcode.io
+
+import com.qualcomm.robotcore.util.RobotLog
+import org.firstinspires.ftc.teamcode.config.ConfigUser
+import org.firstinspires.ftc.teamcode.util.DoubleSlot
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Polls registered sensors on background threads and publishes their latest values, so that the
+ * OpMode thread never waits for a slow device such as an I2C color sensor.
+ *
+ * Each channel has a single writer (the thread of its group) and publishes through a DoubleSlot,
+ * so reading never blocks. Every value is stamped with the time it was measured, and each channel
+ * knows how old its values may be before they are considered stale.
+ *
+ * Channels in the same group share a thread, so a slow device should get its own group to keep it
+ * from delaying the others. Channels must be registered before `start()`.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+class SensorAcquisition {
+
+    // CONFIGURATION
+    class Config : ConfigUser("Hardware/config.properties") {
+        val useSensorAcquisition = file.getBoolean("UseSensorAcquisition")
+        val encoderPeriod = file.getInteger("EncoderAcquisitionPeriod")
+        val colorPeriod = file.getInteger("ColorAcquisitionPeriod")
+        val staleAfterPeriods = file.getDouble("StaleAfterPeriods")
+    }
+
+    /**
+     * A group of values read together from one device.
+     *
+     * @property name       Name of the channel in reports
+     * @property size       The number of values
+     * @property maxAgeMs   Values older than this are stale
+     */
+    class Channel internal constructor(val name: String,
+                                       val size: Int,
+                                       internal val periodNanos: Long,
+                                       val maxAgeMs: Long,
+                                       private val reader: (DoubleArray) -> Unit) {
+        private val slot = DoubleSlot(size)
+        // Only touched by the thread of the channel's group
+        private val buffer = DoubleArray(size)
+        internal var nextDue = 0L
+
+        /**
+         * When the latest values were measured in `System.nanoTime()`, or 0 if never.
+         */
+        @Volatile var timestampNanos: Long = 0
+            private set
+        @Volatile var reads: Long = 0
+            private set
+        @Volatile var errors: Long = 0
+            private set
+
+        /**
+         * Copies the latest values. Never blocks.
+         *
+         * @param into The array to copy into, of at least `size` elements
+         * @return When the values were measured in `System.nanoTime()`, or 0 if never
+         */
+        fun read(into: DoubleArray): Long = slot.read(into)
+
+        /**
+         * The age of the latest values in milliseconds, or `Long.MAX_VALUE` if there are none.
+         */
+        val ageMs: Long
+            get() {
+                val stamp = timestampNanos
+                return if (stamp == 0L) Long.MAX_VALUE else (System.nanoTime() - stamp) / 1000000
+            }
+
+        /**
+         * @param timestampNanos A stamp returned by `read`
+         * @return Whether values measured at the given time are too old to be used
+         */
+        fun isStale(timestampNanos: Long): Boolean =
+                timestampNanos == 0L || System.nanoTime() - timestampNanos > maxAgeMs * 1000000
+
+        internal fun acquire() {
+            try {
+                reader(buffer)
+                val stamp = System.nanoTime()
+                slot.publish(buffer, stamp = stamp)
+                timestampNanos = stamp
+                reads++
+            } catch (exc: Exception) {
+                // Keep the last values; they will turn stale if this persists
+                errors++
+                if (errors == 1L) RobotLog.ee("SensorAcquisition", "Failed to read $name: ${exc.message}")
+            }
+        }
+
+        override fun toString() = "$name: $reads reads, $errors errors, age $ageMs ms"
+    }
+
+    private val groups = LinkedHashMap<String, MutableList<Channel>>()
+    private val threads = ArrayList<Thread>()
+    @Volatile private var isRunning = false
+
+    /**
+     * All registered channels.
+     */
+    val channels: List<Channel> get() = groups.values.flatten()
+
+    /**
+     * Registers a channel to be read periodically.
+     *
+     * @param name           Name of the channel in reports
+     * @param size           The number of values the reader writes
+     * @param periodMs       How often to read the channel
+     * @param staleAfterMs   Values older than this are stale
+     * @param group          Channels of the same group are read on the same thread
+     * @param reader         Reads the device into the given array; called on a background thread
+     * @return The channel to read the values from
+     */
+    fun register(name: String, size: Int, periodMs: Int, staleAfterMs: Long,
+                 group: String = "Sensors", reader: (DoubleArray) -> Unit): Channel {
+        check(!isRunning) { "Cannot register $name after starting" }
+        val channel = Channel(name, size, periodMs * 1000000L, staleAfterMs, reader)
+        groups.getOrPut(group) { ArrayList() }.add(channel)
+        return channel
+    }
+
+    /**
+     * Starts one thread for each group of channels.
+     */
+    fun start() {
+        if (isRunning) return
+        isRunning = true
+        for ((group, members) in groups) {
+            threads.add(Thread({ acquisitionLoop(members) }, "SensorAcquisition-$group").apply {
+                isDaemon = true
+                start()
+            })
+        }
+    }
+
+    /**
+     * Stops all threads. The latest values remain readable.
+     */
+    fun stop() {
+        isRunning = false
+        for (thread in threads) {
+            thread.interrupt()
+            thread.join(100)
+        }
+        threads.clear()
+        RobotLog.ii("SensorAcquisition", toString())
+    }
+
+    private fun acquisitionLoop(members: List<Channel>) {
+        while (isRunning && !Thread.currentThread().isInterrupted) {
+            var now = System.nanoTime()
+            var nextWake = Long.MAX_VALUE
+            for (channel in members) {
+                if (now - channel.nextDue >= 0) {
+                    channel.acquire()
+                    now = System.nanoTime()
+                    // Skip missed periods instead of reading back to back
+                    val next = channel.nextDue + channel.periodNanos
+                    channel.nextDue = if (next - now > 0) next else now + channel.periodNanos
+                }
+                nextWake = Math.min(nextWake, channel.nextDue)
+            }
+            val remaining = nextWake - System.nanoTime()
+            if (remaining > 0) LockSupport.parkNanos(remaining)
+        }
+    }
+
+    override fun toString() = channels.joinToString("; ")
+}
@@ -0,0 +1,291 @@
+package org.firstinspires.ftc.teamcode.io
+
+import com.qualcomm.robotcore.hardware.ColorSensor
+import com.qualcomm.robotcore.hardware.DcMotor
+import org.firstinspires.ftc.teamcode.config.ConfigUser
+import org.firstinspires.ftc.teamcode.drivetrain.MecanumKinematics
+import org.firstinspires.ftc.teamcode.drivetrain.MotorPtr
+import org.firstinspires.ftc.teamcode.util.Clock
+
+/**
+ * Reads sensors at most once per control cycle, so that every consumer in a cycle shares the same
+ * readings instead of starting its own hardware transactions.
+ *
+ * A cycle ends when `beginCycle` is called (by the TeleOp loop, and before every poll of the shared
+ * Waiter) or when its snapshot becomes older than the configured maximum age, whichever is first.
+ * Within a cycle, each group of channels (encoders, busy flags, color) is read the first time it is
+ * asked for; unused groups are never read.
+ *
+ * When channels of a SensorAcquisition are given, encoders and color are taken from their latest
+ * values instead, which never blocks. Values that are stale are not used; the hardware is read
+ * directly instead.
+ *
+ * Not thread-safe; meant for the OpMode thread. PoseEstimator and VelocityController read the
+ * encoder channel of the same SensorAcquisition on their own threads.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates a hub for the given drive motors and optional color sensor, optionally
+ *     acquired in the background by the given channels, whose snapshots age with the given clock
+ */
+class SensorHub(motors: Map<MotorPtr, DcMotor>,
+                private val color: ColorSensor? = null,
+                private val encoderChannel: SensorAcquisition.Channel? = null,
+                private val colorChannel: SensorAcquisition.Channel? = null,
+                config: Config = Config(),
+                private val clock: Clock = Clock.REAL) {
+
+    // CONFIGURATION
+    class Config : ConfigUser("Hardware/config.properties") {
+        val snapshotMaxAge = file.getDouble("SnapshotMaxAge")
+    }
+
+    private val motorArray: Array<DcMotor> = Array(MecanumKinematics.MOTOR_COUNT) {
+        motors.getValue(MecanumKinematics.MOTORS[it])
+    }
+    private val maxAgeNanos = (config.snapshotMaxAge * 1e6).toLong()
+
+    private var cycle = 0L
+    private var snapshot: Snapshot? = null
+    private val acquired = DoubleArray(Math.max(MecanumKinematics.MOTOR_COUNT, 4))
+
+    /**
+     * The number of individual channel reads sent to the hardware.
+     */
+    var readsMade: Long = 0
+        private set
+
+    /**
+     * The number of individual channel reads that were answered from a snapshot instead.
+     */
+    var readsSaved: Long = 0
+        private set
+
+    /**
+     * The number of individual channel values taken from the background acquisition, which read
+     * them from the hardware on its own thread.
+     */
+    var readsAcquired: Long = 0
+        private set
+
+    /**
+     * The number of times background values were too old to be used.
+     */
+    var staleReads: Long = 0
+        private set
+
+    /**
+     * Copies the latest values of the given channel into `acquired` if they are fresh.
+     *
+     * @return Whether the values can be used
+     */
+    private fun readAcquired(channel: SensorAcquisition.Channel?): Boolean {
+        if (channel == null) return false
+        if (channel.isStale(channel.read(acquired))) {
+            staleReads++
+            return false
+        }
+        readsAcquired += channel.size
+        return true
+    }
+
+    // Two snapshots take turns, so that a new cycle allocates nothing and the snapshot of the
+    //   previous cycle stays intact until the one after starts
+    private val snapshots = arrayOf(Snapshot(), Snapshot())
+    private var active = 0
+
+    /**
+     * The snapshot of the current cycle. Starts a new cycle if the last snapshot is too old.
+     */
+    val current: Snapshot
+        get() {
+            val existing = snapshot
+            if (existing != null && clock.nanoTime() - existing.timestampNanos <= maxAgeNanos) {
+                return existing
+            }
+            cycle++
+            active = active xor 1
+            return snapshots[active].also {
+                it.reset(cycle, clock.nanoTime())
+                snapshot = it
+            }
+        }
+
+    /**
+     * The snapshot of the current cycle if there is one, without starting a new cycle.
+     */
+    val latest: Snapshot? get() = snapshot
+
+    /**
+     * Ends the current cycle. The next access to `current` reads the hardware again.
+     */
+    fun beginCycle() {
+        snapshot = null
+    }
+
+    override fun toString() =
+            "$readsMade reads made, $readsSaved saved, $readsAcquired acquired, $staleReads stale " +
+                    "over $cycle cycles"
+
+    /**
+     * The readings of one cycle. Each value is read on first use and never changes afterwards,
+     * until the snapshot is reused for the cycle after the next one.
+     */
+    inner class Snapshot internal constructor() {
+        /**
+         * The number of the cycle, starting at 1.
+         */
+        var cycle: Long = 0
+            private set
+
+        /**
+         * When the cycle started, in `clock.nanoTime()`.
+         */
+        var timestampNanos: Long = 0
+            private set
+
+        private val positions = IntArray(MecanumKinematics.MOTOR_COUNT)
+        private val busy = BooleanArray(MecanumKinematics.MOTOR_COUNT)
+        private var hasPositions = false
+        private var hasBusy = false
+
+        private var hasColor = false
+        private var redValue = 0
+        private var greenValue = 0
+        private var blueValue = 0
+        private var alphaValue = 0
+
+        internal fun reset(cycle: Long, timestampNanos: Long) {
+            this.cycle = cycle
+            this.timestampNanos = timestampNanos
+            hasPositions = false
+            hasBusy = false
+            hasColor = false
+        }
+
+        /**
+         * @return The encoder position of the given drive motor
+         */
+        fun position(ptr: MotorPtr): Int {
+            if (hasPositions) {
+                readsSaved++
+            } else {
+                if (readAcquired(encoderChannel)) {
+                    for (i in positions.indices) {
+                        positions[i] = acquired[i].toInt()
+                    }
+                } else {
+                    for (i in motorArray.indices) {
+                        positions[i] = motorArray[i].currentPosition
+                    }
+                    readsMade += MecanumKinematics.MOTOR_COUNT
+                }
+                hasPositions = true
+            }
+            return positions[ptr.ordinal]
+        }
+
+        /**
+         * Copies the encoder positions of the drive motors by ordinal, if they were read in this
+         * cycle. Never reads the hardware.
+         *
+         * @return Whether there were positions to copy
+         */
+        fun copyPositionsIfRead(into: IntArray): Boolean {
+            if (hasPositions) System.arraycopy(positions, 0, into, 0, positions.size)
+            return hasPositions
+        }
+
+        /**
+         * Copies whether each drive motor is busy by ordinal, if that was read in this cycle. Never
+         * reads the hardware.
+         *
+         * @return Whether there were busy flags to copy
+         */
+        fun copyBusyIfRead(into: BooleanArray): Boolean {
+            if (hasBusy) System.arraycopy(busy, 0, into, 0, busy.size)
+            return hasBusy
+        }
+
+        /**
+         * Copies red, green, blue and alpha, if the color sensor was read in this cycle. Never reads
+         * the hardware.
+         *
+         * @return Whether there were values to copy
+         */
+        fun copyColorIfRead(into: IntArray): Boolean {
+            if (hasColor) {
+                into[0] = redValue
+                into[1] = greenValue
+                into[2] = blueValue
+                into[3] = alphaValue
+            }
+            return hasColor
+        }
+
+        /**
+         * @return Whether the given drive motor is busy reaching its target position
+         */
+        fun isBusy(ptr: MotorPtr): Boolean {
+            readBusy(1)
+            return busy[ptr.ordinal]
+        }
+
+        /**
+         * Whether any drive motor is busy reaching its target position.
+         */
+        val isAnyBusy: Boolean
+            get() {
+                readBusy(MecanumKinematics.MOTOR_COUNT)
+                for (value in busy) {
+                    if (value) return true
+                }
+                return false
+            }
+
+        // Readings of the color sensor, or 0 without one
+        val red: Int
+            get() { readColor(); return redValue }
+        val green: Int
+            get() { readColor(); return greenValue }
+        val blue: Int
+            get() { readColor(); return blueValue }
+        val alpha: Int
+            get() { readColor(); return alphaValue }
+
+        private fun readBusy(reads: Int) {
+            if (hasBusy) {
+                readsSaved += reads
+                return
+            }
+            for (i in motorArray.indices) {
+                busy[i] = motorArray[i].isBusy
+            }
+            readsMade += MecanumKinematics.MOTOR_COUNT
+            hasBusy = true
+        }
+
+        private fun readColor() {
+            if (hasColor) {
+                readsSaved++
+                return
+            }
+            if (readAcquired(colorChannel)) {
+                redValue = acquired[0].toInt()
+                greenValue = acquired[1].toInt()
+                blueValue = acquired[2].toInt()
+                alphaValue = acquired[3].toInt()
+            } else if (color != null) {
+                redValue = color.red()
+                greenValue = color.green()
+                blueValue = color.blue()
+                alphaValue = color.alpha()
+                readsMade += 4
+            }
+            hasColor = true
+        }
+    }
+}
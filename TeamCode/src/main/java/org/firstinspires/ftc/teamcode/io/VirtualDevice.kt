@@ -0,0 +1,25 @@
+package org.firstinspires.ftc.teamcode.io
+
+import com.qualcomm.robotcore.hardware.HardwareDevice
+
+/**
+ * The parts of HardwareDevice that do not depend on the kind of device, for devices that stand in
+ * for real ones off the robot, such as those of a replay or a simulation.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates a device with the given name, whose connection info tells what it is
+ */
+abstract class VirtualDevice(private val name: String,
+                             private val connectionInfo: String) : HardwareDevice {
+    override fun getManufacturer() = HardwareDevice.Manufacturer.Other
+    override fun getDeviceName() = name
+    override fun getConnectionInfo() = connectionInfo
+    override fun getVersion() = 1
+    override fun resetDeviceConfigurationForOpMode() {}
+    override fun close() {}
+    override fun toString() = name
+}
@@ -0,0 +1,72 @@
+package org.firstinspires.ftc.teamcode.io
+
+import com.qualcomm.robotcore.hardware.DcMotor
+import com.qualcomm.robotcore.hardware.Servo
+import org.firstinspires.ftc.teamcode.config.ConfigUser
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Creates write-through caching wrappers around motors and servos, which drop writes that would not
+ * change the state of the hardware. Every skipped write is a USB/hub transaction saved.
+ * Also counts the writes that were sent and skipped by all wrappers it created.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+class WriteCache(
+        /**
+         * Power changes with an absolute value below this are not sent to the motor.
+         */
+        val powerEpsilon: Double,
+        /**
+         * Position changes with an absolute value below this are not sent to the servo.
+         */
+        val positionEpsilon: Double) {
+
+    // CONFIGURATION
+    class Config : ConfigUser("Hardware/config.properties") {
+        val useWriteCache = file.getBoolean("UseWriteCache")
+        val powerEpsilon = file.getDouble("PowerWriteEpsilon")
+        val positionEpsilon = file.getDouble("PositionWriteEpsilon")
+    }
+
+    private val sent = AtomicLong()
+    private val skipped = AtomicLong()
+
+    /**
+     * The number of writes that were passed on to the hardware.
+     */
+    val writesSent: Long get() = sent.get()
+
+    /**
+     * The number of writes that were dropped because they would not change anything.
+     */
+    val writesSkipped: Long get() = skipped.get()
+
+    /**
+     * Records a write and decides whether it should be passed on to the hardware.
+     *
+     * @param changed Whether the write would change the state of the hardware
+     * @return The value of `changed`
+     */
+    internal fun record(changed: Boolean): Boolean {
+        if (changed) sent.incrementAndGet() else skipped.incrementAndGet()
+        return changed
+    }
+
+    /**
+     * Wraps the given motor so that its redundant writes are skipped.
+     */
+    fun wrap(motor: DcMotor): DcMotor =
+            if (motor is CachingDcMotor) motor else CachingDcMotor(motor, this)
+
+    /**
+     * Wraps the given servo so that its redundant writes are skipped.
+     */
+    fun wrap(servo: Servo): Servo =
+            if (servo is CachingServo) servo else CachingServo(servo, this)
+
+    override fun toString(): String = "$writesSent writes sent, $writesSkipped skipped"
+}
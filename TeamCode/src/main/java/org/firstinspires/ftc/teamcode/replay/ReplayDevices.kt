@@ -0,0 +1,162 @@
+package org.firstinspires.ftc.teamcode.replay
+
+import com.qualcomm.robotcore.hardware.ColorSensor
+import com.qualcomm.robotcore.hardware.DcMotor
+import com.qualcomm.robotcore.hardware.DcMotorController
+import com.qualcomm.robotcore.hardware.DcMotorSimple
+import com.qualcomm.robotcore.hardware.I2cAddr
+import com.qualcomm.robotcore.hardware.Servo
+import com.qualcomm.robotcore.hardware.ServoController
+import com.qualcomm.robotcore.hardware.configuration.MotorConfigurationType
+import org.firstinspires.ftc.robotcore.external.navigation.RelicRecoveryVuMark
+import org.firstinspires.ftc.teamcode.autonomous.IVuforia
+import org.firstinspires.ftc.teamcode.io.VirtualDevice
+
+/*
+ * Stand-ins for the devices of a recorded run. They remember what is written to them, so that it
+ * can be checked against the recording, and return the readings that the Replayer gives them.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+
+/**
+ * A motor that reports the recorded encoder position and busy flag.
+ */
+class ReplayDcMotor(name: String) : VirtualDevice(name, "replay"), DcMotor {
+
+    // Readings, set by the Replayer for every cycle
+    var position: Int = 0
+    var busy: Boolean = false
+
+    // What was written, NaN/null until then
+    var lastPower: Double = Double.NaN
+        private set
+    var lastMode: DcMotor.RunMode? = null
+        private set
+
+    private var direction = DcMotorSimple.Direction.FORWARD
+    private var zeroPowerBehavior = DcMotor.ZeroPowerBehavior.UNKNOWN
+    private var targetPosition = 0
+    private var motorType: MotorConfigurationType? = null
+
+    override fun setPower(power: Double) {
+        lastPower = power
+    }
+
+    override fun getPower() = if (lastPower.isNaN()) 0.0 else lastPower
+
+    override fun setMode(mode: DcMotor.RunMode) {
+        lastMode = mode
+    }
+
+    override fun getMode() = lastMode ?: DcMotor.RunMode.RUN_WITHOUT_ENCODER
+
+    override fun getCurrentPosition() = position
+    override fun isBusy() = busy
+
+    override fun setTargetPosition(position: Int) {
+        targetPosition = position
+    }
+
+    override fun getTargetPosition() = targetPosition
+
+    override fun setDirection(direction: DcMotorSimple.Direction) {
+        this.direction = direction
+    }
+
+    override fun getDirection() = direction
+
+    override fun setZeroPowerBehavior(zeroPowerBehavior: DcMotor.ZeroPowerBehavior) {
+        this.zeroPowerBehavior = zeroPowerBehavior
+    }
+
+    override fun getZeroPowerBehavior() = zeroPowerBehavior
+
+    @Deprecated("Use setZeroPowerBehavior")
+    override fun setPowerFloat() {
+        zeroPowerBehavior = DcMotor.ZeroPowerBehavior.FLOAT
+        lastPower = 0.0
+    }
+
+    override fun getPowerFloat() = zeroPowerBehavior == DcMotor.ZeroPowerBehavior.FLOAT && getPower() == 0.0
+
+    override fun getMotorType(): MotorConfigurationType? = motorType
+
+    override fun setMotorType(motorType: MotorConfigurationType?) {
+        this.motorType = motorType
+    }
+
+    override fun getController(): DcMotorController? = null
+    override fun getPortNumber() = 0
+}
+
+/**
+ * A servo that remembers the position written to it.
+ */
+class ReplayServo(name: String) : VirtualDevice(name, "replay"), Servo {
+
+    // NaN until written
+    var lastPosition: Double = Double.NaN
+        private set
+
+    private var direction = Servo.Direction.FORWARD
+
+    override fun setPosition(position: Double) {
+        lastPosition = position
+    }
+
+    override fun getPosition() = if (lastPosition.isNaN()) 0.0 else lastPosition
+
+    override fun setDirection(direction: Servo.Direction) {
+        this.direction = direction
+    }
+
+    override fun getDirection() = direction
+
+    override fun scaleRange(min: Double, max: Double) {}
+
+    override fun getController(): ServoController? = null
+    override fun getPortNumber() = 0
+}
+
+/**
+ * A color sensor that reports the recorded readings.
+ */
+class ReplayColorSensor(name: String) : VirtualDevice(name, "replay"), ColorSensor {
+
+    // Readings, set by the Replayer for every cycle
+    val values = IntArray(4)
+
+    private var address = I2cAddr.zero()
+
+    override fun red() = values[0]
+    override fun green() = values[1]
+    override fun blue() = values[2]
+    override fun alpha() = values[3]
+
+    override fun argb() = (values[3] shl 24) or (values[0] shl 16) or (values[1] shl 8) or values[2]
+
+    override fun enableLed(enable: Boolean) {}
+
+    override fun setI2cAddress(newAddress: I2cAddr) {
+        address = newAddress
+    }
+
+    override fun getI2cAddress(): I2cAddr = address
+}
+
+/**
+ * A VuMark reader that reports what was read in the recorded cycle.
+ */
+class ReplayVuforia : IVuforia {
+
+    // Set by the Replayer for every cycle
+    var vuMark = RelicRecoveryVuMark.UNKNOWN
+
+    override fun startTracking() {}
+    override fun readVuMark() = vuMark
+    override fun stopTracking() {}
+}
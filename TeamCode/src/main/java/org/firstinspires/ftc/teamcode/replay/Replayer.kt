@@ -0,0 +1,307 @@
+package org.firstinspires.ftc.teamcode.replay
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode
+import com.qualcomm.robotcore.eventloop.opmode.OpMode
+import com.qualcomm.robotcore.hardware.Gamepad
+import com.qualcomm.robotcore.hardware.HardwareMap
+import com.qualcomm.robotcore.robocol.TelemetryMessage
+import org.firstinspires.ftc.robotcore.external.navigation.RelicRecoveryVuMark
+import org.firstinspires.ftc.robotcore.internal.opmode.OpModeServices
+import org.firstinspires.ftc.teamcode.autonomous.AutonomousBase
+import org.firstinspires.ftc.teamcode.autonomous.DecisionMaker
+import org.firstinspires.ftc.teamcode.config.ConfigFile
+import org.firstinspires.ftc.teamcode.config.ConfigUser
+import org.firstinspires.ftc.teamcode.drivetrain.MecanumKinematics
+import org.firstinspires.ftc.teamcode.io.FlightLog
+import org.firstinspires.ftc.teamcode.io.FlightRecorder
+import org.firstinspires.ftc.teamcode.io.Hardware
+import org.firstinspires.ftc.teamcode.util.Clock
+import java.io.File
+
+/**
+ * Replays a run recorded by FlightRecorder: the recorded OpMode runs again against stand-in
+ * devices, and what it writes to them is checked against the recording, cycle by cycle.
+ *
+ * Every control cycle of the replay (see `Hardware.endCycle`) is matched to the recorded cycle of
+ * the same number. At its end, the powers, modes and servo positions written so far are compared
+ * with the record; then the clock jumps to the recorded time, the gamepads take their recorded
+ * state, and the stand-ins return the encoder positions, busy flags, color and VuMark that were
+ * read in the next cycle. Waits never sleep, so a replay takes as long as the code takes to run.
+ * Tasks get the recorded random seed. Cycles without a record (skipped or dropped while recording)
+ * keep the previous readings and are not checked.
+ *
+ * Background threads are not started while replaying; the pose is updated once per cycle instead.
+ * A run that used velocity control therefore cannot match. DecisionMaker decides from the task
+ * statistics beside the config directory, which should be those of the time of the recording.
+ *
+ * Runs on a workstation JVM through `main`, with the SDK libraries and a mockable android.jar (as
+ * used by local unit tests) on the classpath, as `./gradlew :TeamCode:replay` sets it up.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates a replay of the given recording
+ */
+class Replayer(private val log: FlightLog,
+               private val config: Config = Config()) {
+
+    // CONFIGURATION
+    class Config : ConfigUser("Replay/config.properties") {
+        // Largest differences from the recording that still count as matching
+        val powerTolerance = file.getDouble("PowerTolerance")
+        val positionTolerance = file.getDouble("PositionTolerance")
+        // Mismatches reported per replay; the replay goes on after them regardless
+        val maxMismatches = file.getInteger("MaxMismatches")
+    }
+
+    companion object {
+        /**
+         * Replays every recording given, or every recording in the directories given, and prints
+         * a report of each. Exits with status 1 if any replay did not match its recording.
+         *
+         * Arguments: `[--config <dir>] <file or directory>...`. The config directory defaults to the
+         * storage directory of the source tree. It is copied, with the task statistics beside it,
+         * before every replay, so that replays start alike and never change the originals.
+         */
+        @JvmStatic
+        fun main(args: Array<String>) {
+            var configDir = File("TeamCode/src/main/storage")
+            val logs = ArrayList<File>()
+            var i = 0
+            while (i < args.size) {
+                if (args[i] == "--config") {
+                    configDir = File(args[++i])
+                } else {
+                    val file = File(args[i])
+                    logs.addAll(if (file.isDirectory) file.listFiles().filter { it.isFile }.sorted() else listOf(file))
+                }
+                i++
+            }
+
+            // Must be set before ConfigFile is first used
+            val workDir = createTempDir("replay")
+            val workConfig = File(workDir, "config")
+            System.setProperty(ConfigFile.CONFIG_PATH_PROPERTY, workConfig.path)
+
+            var matchedAll = true
+            for (file in logs) {
+                workDir.deleteRecursively()
+                configDir.copyRecursively(workConfig)
+                val statsFile = DecisionMaker.Config().statsFile
+                val stats = File(configDir.absoluteFile.parentFile, statsFile)
+                if (stats.isFile) stats.copyTo(File(workDir, statsFile))
+
+                val report = try {
+                    Replayer(FlightLog(file)).run()
+                } catch (exc: Exception) {
+                    println("${file.name}: cannot replay, ${exc.message}")
+                    matchedAll = false
+                    continue
+                }
+                println(report)
+                if (!report.isMatch) matchedAll = false
+            }
+            workDir.deleteRecursively()
+            if (!matchedAll) System.exit(1)
+        }
+    }
+
+    /**
+     * A difference between what the replay wrote to a device and what was recorded.
+     */
+    data class Mismatch(val cycle: Long, val task: String, val device: String,
+                        val expected: Double, val actual: Double) {
+        override fun toString() = "Cycle $cycle${if (task.isEmpty()) "" else " ($task)"}: " +
+                "$device expected $expected, was $actual"
+    }
+
+    /**
+     * The outcome of a replay.
+     *
+     * @property cycles     Cycles replayed
+     * @property unchecked  Cycles that had no record
+     * @property mismatches The first mismatches, up to the configured maximum
+     * @property total      The number of mismatches
+     * @property error      What the OpMode threw, if anything
+     */
+    class Report(val log: FlightLog,
+                 val cycles: Long,
+                 val unchecked: Long,
+                 val mismatches: List<Mismatch>,
+                 val total: Int,
+                 val recordedSeconds: Double,
+                 val wallSeconds: Double,
+                 val error: Throwable?) {
+
+        val isMatch: Boolean get() = total == 0 && error == null
+
+        override fun toString() = buildString {
+            append("$log: ${if (isMatch) "matches" else "DIFFERS"}, $cycles cycles ($unchecked unchecked), ")
+            append("%.1f s recorded replayed in %.2f s".format(recordedSeconds, wallSeconds))
+            if (error != null) append("\n  threw $error")
+            for (mismatch in mismatches) append("\n  $mismatch")
+            if (total > mismatches.size) append("\n  and ${total - mismatches.size} more")
+        }
+    }
+
+    /**
+     * Shows the recorded time, and advances it only when a cycle ends.
+     */
+    private class ReplayClock : Clock {
+        var nanos = 0L
+
+        override fun nanoTime() = nanos
+
+        override fun sleep(durationMs: Long) {
+            if (Thread.interrupted()) throw InterruptedException()
+        }
+    }
+
+    // Telemetry is sent nowhere
+    private object NoServices : OpModeServices {
+        override fun refreshUserTelemetry(telemetry: TelemetryMessage, sInterval: Double) {}
+        override fun requestOpModeStop(opModeToStopIfActive: OpMode) {}
+    }
+
+    private val motors = log.motorNames.map { ReplayDcMotor(it) }
+    private val servos = log.servoNames.map { ReplayServo(it) }
+    private val color = ReplayColorSensor(log.colorSensor)
+    private val vuforia = ReplayVuforia()
+    private val gamepad1 = Gamepad()
+    private val gamepad2 = Gamepad()
+    private val clock = ReplayClock()
+
+    private var cycle = 0L
+    // Index of the first record not replayed yet
+    private var next = 0
+    private var unchecked = 0L
+    private val mismatches = ArrayList<Mismatch>()
+    private var total = 0
+    private var isFinished = false
+    private var opMode: OpMode? = null
+
+    init {
+        require(log.size > 0) { "Nothing was recorded" }
+        require(!log.isTruncated) { "The start of the run was overwritten; raise FlightRecorderCapacity" }
+    }
+
+    /**
+     * Runs the given OpMode, by default a new instance of the recorded one, until the recording
+     * ends or the OpMode does.
+     */
+    fun run(opMode: OpMode = Class.forName(log.opModeClass).newInstance() as OpMode): Report {
+        this.opMode = opMode
+        opMode.hardwareMap = HardwareMap(null).apply {
+            motors.forEach { dcMotor.put(it.deviceName, it) }
+            servos.forEach { servo.put(it.deviceName, it) }
+            colorSensor.put(color.deviceName, color)
+        }
+        opMode.gamepad1 = gamepad1
+        opMode.gamepad2 = gamepad2
+        opMode.internalOpModeServices = NoServices
+        if (opMode is AutonomousBase) {
+            opMode.randomSeed = log.seed
+            opMode.vuforiaProvider = { vuforia }
+        }
+
+        // The first cycle starts when initialization ends
+        clock.nanos = log.timestampNanos(0)
+        if (log.cycle(0) == 1L) loadReadings(0)
+
+        Hardware.clock = clock
+        Hardware.replayHook = { endCycle() }
+        val wallStart = System.nanoTime()
+        var error: Throwable? = null
+        try {
+            if (opMode is LinearOpMode) {
+                opMode.start()
+                opMode.runOpMode()
+            } else {
+                opMode.init()
+                opMode.start()
+                while (!isFinished) opMode.loop()
+                opMode.stop()
+            }
+        } catch (exc: Exception) {
+            error = exc
+        } finally {
+            Hardware.clock = Clock.REAL
+            Hardware.replayHook = null
+        }
+
+        return Report(log, cycle, unchecked, ArrayList(mismatches), total,
+                (log.timestampNanos(log.size - 1) - log.timestampNanos(0)) / 1e9,
+                (System.nanoTime() - wallStart) / 1e9, error)
+    }
+
+    private fun endCycle() {
+        if (isFinished) return
+        cycle++
+
+        if (log.cycle(next) == cycle) {
+            check(next)
+            clock.nanos = log.timestampNanos(next)
+            log.copyGamepad(next, 1, gamepad1)
+            log.copyGamepad(next, 2, gamepad2)
+            next++
+        } else {
+            // Spread the time until the next record over the cycles in between
+            unchecked++
+            clock.nanos += (log.timestampNanos(next) - clock.nanos) / (log.cycle(next) - cycle + 1)
+        }
+
+        if (next == log.size) {
+            isFinished = true
+            (opMode as? LinearOpMode)?.stop()
+            return
+        }
+        // What the next cycle reads was recorded at its end
+        if (log.cycle(next) == cycle + 1) loadReadings(next)
+        Hardware.poseEstimator?.update()
+    }
+
+    private fun check(index: Int) {
+        for (i in motors.indices) {
+            val motor = motors[i]
+            val power = log.power(index, i)
+            if (!power.isNaN() && !(Math.abs(motor.lastPower - power) <= config.powerTolerance)) {
+                mismatch(index, "$motor power", power, motor.lastPower)
+            }
+            val mode = log.mode(index, i)
+            if (mode >= 0 && motor.lastMode?.ordinal != mode) {
+                mismatch(index, "$motor mode", mode.toDouble(), motor.lastMode?.ordinal?.toDouble() ?: Double.NaN)
+            }
+        }
+        for (i in servos.indices) {
+            val servo = servos[i]
+            val position = log.servoPosition(index, i)
+            if (!position.isNaN() && !(Math.abs(servo.lastPosition - position) <= config.positionTolerance)) {
+                mismatch(index, "$servo position", position, servo.lastPosition)
+            }
+        }
+    }
+
+    private fun mismatch(index: Int, device: String, expected: Double, actual: Double) {
+        total++
+        if (mismatches.size < config.maxMismatches) {
+            mismatches.add(Mismatch(cycle, log.task(index), device, expected, actual))
+        }
+    }
+
+    // The drive motors come first, in MotorPtr order
+    private fun loadReadings(index: Int) {
+        if (log.hasFlag(index, FlightRecorder.FLAG_ENCODERS)) {
+            for (i in 0 until MecanumKinematics.MOTOR_COUNT) motors[i].position = log.encoder(index, i)
+        }
+        if (log.hasFlag(index, FlightRecorder.FLAG_BUSY)) {
+            for (i in 0 until MecanumKinematics.MOTOR_COUNT) motors[i].busy = log.isBusy(index, i)
+        }
+        if (log.hasFlag(index, FlightRecorder.FLAG_COLOR)) {
+            for (i in 0 until 4) color.values[i] = log.color(index, i)
+        }
+        val vuMark = log.vuMark(index)
+        vuforia.vuMark = if (vuMark >= 0) RelicRecoveryVuMark.values()[vuMark] else RelicRecoveryVuMark.UNKNOWN
+    }
+}
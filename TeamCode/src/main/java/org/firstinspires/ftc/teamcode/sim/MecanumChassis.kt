@@ -0,0 +1,144 @@
+package org.firstinspires.ftc.teamcode.sim
+
+import org.firstinspires.ftc.teamcode.drivetrain.MotorPtr
+import org.firstinspires.ftc.teamcode.drivetrain.Pose
+import org.locationtech.jts.algorithm.Angle
+
+/**
+ * A mecanum chassis as a rigid body on a flat, walled field, driven by four simulated motors.
+ *
+ * The wheels do not slip. The rollers of a wheel let it move freely along one diagonal, so each
+ * wheel only pushes, and is only turned by the chassis, along the other: FRONT_LEFT and REAR_RIGHT
+ * along forward-right, FRONT_RIGHT and REAR_LEFT along forward-left, as in MecanumKinematics. The
+ * motors of the left side are mounted mirrored, which is why Drivetrain reverses them. Rolling
+ * resistance is linear in the speed. Walls stop the chassis without bouncing it back.
+ *
+ * Positions are in inches and headings in radians in the frame of the field, with the same
+ * conventions as Pose; everything else is in SI units.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates a chassis at rest at the origin, driven by the given motors in MotorPtr order
+ */
+class MecanumChassis(private val motors: List<SimMotor>,
+                     private val config: Simulator.Config) {
+
+    companion object {
+        const val METERS_PER_INCH = 0.0254
+
+        // Components of the diagonals of the wheels, in MotorPtr order
+        private val SQRT_HALF = Math.sqrt(0.5)
+        private val DIAGONAL_X = doubleArrayOf(SQRT_HALF, -SQRT_HALF, -SQRT_HALF, SQRT_HALF)
+        private val DIAGONAL_Y = doubleArrayOf(SQRT_HALF, SQRT_HALF, SQRT_HALF, SQRT_HALF)
+    }
+
+    // Wheel contact points in the robot's frame in meters, and the way each motor is mounted
+    private val wheelX = DoubleArray(motors.size)
+    private val wheelY = DoubleArray(motors.size)
+    private val mounting = DoubleArray(motors.size)
+
+    private val wheelRadius = config.wheelDiameter / 2 * METERS_PER_INCH
+    private val mass = config.robotMass
+    // A uniform plate of the size of the robot
+    private val inertia = mass * (Math.pow(config.robotWidth * METERS_PER_INCH, 2.0) +
+            Math.pow(config.robotLength * METERS_PER_INCH, 2.0)) / 12
+
+    // State in the field frame: meters, radians, and their rates
+    private var x = 0.0
+    private var y = 0.0
+    private var heading = 0.0
+    private var vx = 0.0
+    private var vy = 0.0
+    private var omega = 0.0
+
+    init {
+        require(motors.size == MotorPtr.values().size) { "A mecanum chassis has four motors" }
+        for (ptr in MotorPtr.values()) {
+            val i = ptr.ordinal
+            wheelX[i] = (if (ptr.isLeft) -0.5 else 0.5) * config.trackWidth * METERS_PER_INCH
+            wheelY[i] = (if (ptr.isFront) 0.5 else -0.5) * config.wheelBase * METERS_PER_INCH
+            mounting[i] = if (ptr.isLeft) -1.0 else 1.0
+        }
+    }
+
+    /**
+     * Where the chassis is on the field.
+     */
+    var pose: Pose
+        get() = Pose(x / METERS_PER_INCH, y / METERS_PER_INCH, Angle.normalize(heading))
+        set(value) {
+            x = value.x * METERS_PER_INCH
+            y = value.y * METERS_PER_INCH
+            heading = value.heading
+            vx = 0.0
+            vy = 0.0
+            omega = 0.0
+        }
+
+    /**
+     * The speed of the chassis in inches per second.
+     */
+    val speed: Double get() = Math.hypot(vx, vy) / METERS_PER_INCH
+
+    /**
+     * Moves the chassis and turns the motors for the given seconds.
+     */
+    fun step(seconds: Double) {
+        val cos = Math.cos(heading)
+        val sin = Math.sin(heading)
+        // Velocity in the robot's frame
+        val robotVx = vx * cos + vy * sin
+        val robotVy = -vx * sin + vy * cos
+
+        var forceX = 0.0
+        var forceY = 0.0
+        var torque = 0.0
+        for (i in motors.indices) {
+            // Speed of the wheel's contact point along its diagonal, and of its rim
+            val along = (robotVx - omega * wheelY[i]) * DIAGONAL_X[i] + (robotVy + omega * wheelX[i]) * DIAGONAL_Y[i]
+            val wheelSpeed = mounting[i] * Math.sqrt(2.0) * along / wheelRadius
+
+            // The rim moves √2 times as fast as the point along the diagonal, so it pushes √2 times as hard
+            val force = mounting[i] * Math.sqrt(2.0) * motors[i].torque(wheelSpeed) / wheelRadius
+            forceX += force * DIAGONAL_X[i]
+            forceY += force * DIAGONAL_Y[i]
+            torque += force * (wheelX[i] * DIAGONAL_Y[i] - wheelY[i] * DIAGONAL_X[i])
+            motors[i].advance(wheelSpeed, seconds)
+        }
+        forceX -= config.linearDamping * robotVx
+        forceY -= config.linearDamping * robotVy
+        torque -= config.angularDamping * omega
+
+        // Semi-implicit Euler: the new velocities move the chassis
+        vx += (forceX * cos - forceY * sin) / mass * seconds
+        vy += (forceX * sin + forceY * cos) / mass * seconds
+        omega += torque / inertia * seconds
+        x += vx * seconds
+        y += vy * seconds
+        heading += omega * seconds
+
+        stopAtWalls()
+    }
+
+    private fun stopAtWalls() {
+        // Half the extent of the rotated robot along each axis of the field
+        val cos = Math.abs(Math.cos(heading))
+        val sin = Math.abs(Math.sin(heading))
+        val halfWidth = config.robotWidth / 2 * METERS_PER_INCH
+        val halfLength = config.robotLength / 2 * METERS_PER_INCH
+        val limitX = config.fieldSize / 2 * METERS_PER_INCH - (halfWidth * cos + halfLength * sin)
+        val limitY = config.fieldSize / 2 * METERS_PER_INCH - (halfWidth * sin + halfLength * cos)
+
+        if (Math.abs(x) > limitX) {
+            x = Math.copySign(limitX, x)
+            vx = 0.0
+        }
+        if (Math.abs(y) > limitY) {
+            y = Math.copySign(limitY, y)
+            vy = 0.0
+        }
+    }
+}
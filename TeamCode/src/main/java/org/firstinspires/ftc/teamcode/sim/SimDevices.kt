@@ -0,0 +1,271 @@
+package org.firstinspires.ftc.teamcode.sim
+
+import com.qualcomm.robotcore.hardware.ColorSensor
+import com.qualcomm.robotcore.hardware.DcMotor
+import com.qualcomm.robotcore.hardware.DcMotorController
+import com.qualcomm.robotcore.hardware.DcMotorSimple
+import com.qualcomm.robotcore.hardware.I2cAddr
+import com.qualcomm.robotcore.hardware.Servo
+import com.qualcomm.robotcore.hardware.ServoController
+import com.qualcomm.robotcore.hardware.configuration.MotorConfigurationType
+import com.qualcomm.robotcore.util.Range
+import org.firstinspires.ftc.robotcore.external.navigation.RelicRecoveryVuMark
+import org.firstinspires.ftc.teamcode.autonomous.IVuforia
+import org.firstinspires.ftc.teamcode.io.VirtualDevice
+
+/*
+ * Simulated devices. They behave like their real counterparts as far as the code can tell, and
+ * change only when the Simulator advances time.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+
+/**
+ * A geared DC motor with an encoder, behind a motor controller that implements the run modes.
+ *
+ * The motor is linear: its torque falls from the stall torque at rest to zero at the free speed,
+ * scaled by the voltage the controller applies (from -1 to 1). At zero power, BRAKE shorts the
+ * motor, which then resists turning; FLOAT leaves it free. Speeds and torques are those of the
+ * output shaft and in the motor's own direction, before `direction` is applied, as the load sees
+ * them.
+ *
+ * @constructor Creates a motor at rest with the given parameters
+ */
+class SimMotor(name: String, private val model: Model) : VirtualDevice(name, "simulated"), DcMotor {
+
+    /**
+     * @property stallTorque        Torque at rest and full voltage in N·m
+     * @property freeSpeed          Speed without load at full voltage in rad/s
+     * @property ticksPerRevolution Encoder ticks per revolution of the output shaft
+     * @property velocityGain       Voltage added per fraction of the free speed below the commanded
+     *     speed in RUN_USING_ENCODER
+     * @property positionGain       Voltage per tick of error in RUN_TO_POSITION
+     * @property targetTolerance    Ticks from the target within which RUN_TO_POSITION is done
+     */
+    class Model(val stallTorque: Double,
+                val freeSpeed: Double,
+                val ticksPerRevolution: Double,
+                val velocityGain: Double,
+                val positionGain: Double,
+                val targetTolerance: Int)
+
+    /**
+     * Speed of the output shaft in rad/s.
+     */
+    var speed: Double = 0.0
+        private set
+
+    // Angle of the output shaft in radians, and where the encoder was last reset
+    private var angle = 0.0
+    private var resetAngle = 0.0
+    private val ticksPerRadian = model.ticksPerRevolution / (2 * Math.PI)
+
+    private var power = 0.0
+    private var mode = DcMotor.RunMode.RUN_WITHOUT_ENCODER
+    private var direction = DcMotorSimple.Direction.FORWARD
+    private var zeroPowerBehavior = DcMotor.ZeroPowerBehavior.BRAKE
+    private var targetPosition = 0
+    private var motorType: MotorConfigurationType? = null
+
+    // Turns the motor's own direction into that of the code
+    private val sign: Double get() = if (direction == DcMotorSimple.Direction.FORWARD) 1.0 else -1.0
+
+    /**
+     * @return The torque of the output shaft in N·m when it turns at the given speed
+     */
+    fun torque(speed: Double): Double {
+        val voltage = when (mode) {
+            DcMotor.RunMode.RUN_WITHOUT_ENCODER -> power
+            DcMotor.RunMode.RUN_USING_ENCODER ->
+                power + model.velocityGain * (power - sign * speed / model.freeSpeed)
+            DcMotor.RunMode.RUN_TO_POSITION -> Range.clip(
+                    model.positionGain * (targetPosition - currentPosition), -Math.abs(power), Math.abs(power))
+            else -> 0.0
+        }
+        if (voltage == 0.0 && zeroPowerBehavior == DcMotor.ZeroPowerBehavior.FLOAT) return 0.0
+        return model.stallTorque * (sign * Range.clip(voltage, -1.0, 1.0) - speed / model.freeSpeed)
+    }
+
+    /**
+     * Turns the output shaft at the given speed for the given seconds, as driven by its load.
+     */
+    fun advance(speed: Double, seconds: Double) {
+        this.speed = speed
+        angle += speed * seconds
+    }
+
+    /**
+     * Turns the output shaft for the given seconds, accelerating a load of the given moment of
+     * inertia in kg·m² that is otherwise free.
+     */
+    fun step(seconds: Double, inertia: Double) {
+        speed += torque(speed) / inertia * seconds
+        angle += speed * seconds
+    }
+
+    override fun setPower(power: Double) {
+        this.power = Range.clip(power, -1.0, 1.0)
+    }
+
+    override fun getPower() = power
+
+    override fun setMode(mode: DcMotor.RunMode) {
+        if (mode == DcMotor.RunMode.STOP_AND_RESET_ENCODER) {
+            resetAngle = angle
+            power = 0.0
+        }
+        this.mode = mode
+    }
+
+    override fun getMode() = mode
+
+    override fun getCurrentPosition() = Math.round(sign * (angle - resetAngle) * ticksPerRadian).toInt()
+
+    override fun isBusy() = mode == DcMotor.RunMode.RUN_TO_POSITION &&
+            Math.abs(targetPosition - currentPosition) > model.targetTolerance
+
+    override fun setTargetPosition(position: Int) {
+        targetPosition = position
+    }
+
+    override fun getTargetPosition() = targetPosition
+
+    override fun setDirection(direction: DcMotorSimple.Direction) {
+        this.direction = direction
+    }
+
+    override fun getDirection() = direction
+
+    override fun setZeroPowerBehavior(zeroPowerBehavior: DcMotor.ZeroPowerBehavior) {
+        this.zeroPowerBehavior = zeroPowerBehavior
+    }
+
+    override fun getZeroPowerBehavior() = zeroPowerBehavior
+
+    @Deprecated("Use setZeroPowerBehavior")
+    override fun setPowerFloat() {
+        zeroPowerBehavior = DcMotor.ZeroPowerBehavior.FLOAT
+        power = 0.0
+    }
+
+    override fun getPowerFloat() = zeroPowerBehavior == DcMotor.ZeroPowerBehavior.FLOAT && power == 0.0
+
+    override fun getMotorType(): MotorConfigurationType? = motorType
+
+    override fun setMotorType(motorType: MotorConfigurationType?) {
+        this.motorType = motorType
+    }
+
+    override fun getController(): DcMotorController? = null
+    override fun getPortNumber() = 0
+}
+
+/**
+ * A servo that moves toward its commanded position at a limited speed.
+ *
+ * @constructor Creates a servo at the given position, moving the given part of its range per second
+ */
+class SimServo(name: String, private val rangePerSecond: Double, initialPosition: Double)
+    : VirtualDevice(name, "simulated"), Servo {
+
+    /**
+     * Where the servo actually is, from 0 to 1 of its full range regardless of direction and scale.
+     */
+    var actualPosition: Double = initialPosition
+        private set
+
+    private var position = initialPosition
+    private var direction = Servo.Direction.FORWARD
+    private var min = 0.0
+    private var max = 1.0
+
+    // Where the commanded position is in the servo's full range
+    private val goal: Double get() {
+        val scaled = min + position * (max - min)
+        return if (direction == Servo.Direction.FORWARD) scaled else 1.0 - scaled
+    }
+
+    /**
+     * Moves the servo toward its commanded position for the given seconds.
+     */
+    fun step(seconds: Double) {
+        val reach = rangePerSecond * seconds
+        actualPosition += Range.clip(goal - actualPosition, -reach, reach)
+    }
+
+    override fun setPosition(position: Double) {
+        this.position = Range.clip(position, 0.0, 1.0)
+    }
+
+    // Like the SDK, returns the last commanded position rather than a measured one
+    override fun getPosition() = position
+
+    override fun setDirection(direction: Servo.Direction) {
+        this.direction = direction
+    }
+
+    override fun getDirection() = direction
+
+    override fun scaleRange(min: Double, max: Double) {
+        this.min = Range.clip(min, 0.0, 1.0)
+        this.max = Range.clip(max, 0.0, 1.0)
+    }
+
+    override fun getController(): ServoController? = null
+    override fun getPortNumber() = 0
+}
+
+/**
+ * A color sensor whose readings are set by the Simulator.
+ */
+class SimColorSensor(name: String) : VirtualDevice(name, "simulated"), ColorSensor {
+
+    // Red, green, blue and alpha
+    val values = IntArray(4)
+
+    var isLedEnabled: Boolean = false
+        private set
+
+    private var address = I2cAddr.zero()
+
+    override fun red() = values[0]
+    override fun green() = values[1]
+    override fun blue() = values[2]
+    override fun alpha() = values[3]
+
+    override fun argb() = (values[3] shl 24) or (values[0] shl 16) or (values[1] shl 8) or values[2]
+
+    override fun enableLed(enable: Boolean) {
+        isLedEnabled = enable
+    }
+
+    override fun setI2cAddress(newAddress: I2cAddr) {
+        address = newAddress
+    }
+
+    override fun getI2cAddress(): I2cAddr = address
+}
+
+/**
+ * A VuMark reader that sees the pictograph of the match only while it is in view of the camera.
+ *
+ * @constructor Creates a reader for the given simulation
+ */
+class SimVuforia(private val simulator: Simulator) : IVuforia {
+
+    private var isTracking = false
+
+    override fun startTracking() {
+        isTracking = true
+    }
+
+    override fun readVuMark(): RelicRecoveryVuMark =
+            if (isTracking && simulator.isPictographVisible) simulator.vuMark else RelicRecoveryVuMark.UNKNOWN
+
+    override fun stopTracking() {
+        isTracking = false
+    }
+}
@@ -0,0 +1,419 @@
+package org.firstinspires.ftc.teamcode.sim
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode
+import com.qualcomm.robotcore.eventloop.opmode.OpMode
+import com.qualcomm.robotcore.hardware.Gamepad
+import com.qualcomm.robotcore.hardware.HardwareMap
+import com.qualcomm.robotcore.robocol.TelemetryMessage
+import org.firstinspires.ftc.robotcore.external.navigation.RelicRecoveryVuMark
+import org.firstinspires.ftc.robotcore.internal.opmode.OpModeServices
+import org.firstinspires.ftc.teamcode.AllianceColor
+import org.firstinspires.ftc.teamcode.autonomous.AutonomousBase
+import org.firstinspires.ftc.teamcode.autonomous.DecisionMaker
+import org.firstinspires.ftc.teamcode.config.ConfigFile
+import org.firstinspires.ftc.teamcode.config.ConfigUser
+import org.firstinspires.ftc.teamcode.drivetrain.Pose
+import org.firstinspires.ftc.teamcode.drivetrain.PoseEstimator
+import org.firstinspires.ftc.teamcode.io.Hardware
+import org.firstinspires.ftc.teamcode.util.Clock
+import org.firstinspires.ftc.teamcode.util.VirtualClock
+import org.locationtech.jts.algorithm.Angle
+import org.locationtech.jts.math.Vector2D
+import java.io.File
+import java.util.Random
+
+/**
+ * Runs OpModes unchanged on a workstation, against simulated devices on a Relic Recovery field.
+ *
+ * The devices are put into a HardwareMap under the names that `Hardware.init` asks for. The drive
+ * motors move a MecanumChassis; the flywheels spin freely; the servos move at a limited speed. The
+ * jewel sensor sees the jewel beside it while the jewel arm is lowered, and the arm knocks a jewel
+ * off when it runs into it. The VuMark of the match can be read while the pictograph is in view of
+ * the camera. The jewel colors and the VuMark are drawn from the seed of the simulation, which also
+ * seeds the random numbers of the tasks, so that runs with the same seed are the same.
+ *
+ * Time is simulated by a VirtualClock, which only advances when the OpMode sleeps and never waits
+ * for real time, so a match takes as long as the code and the physics take to compute. The physics
+ * steps at the configured step size, the gamepad script runs at the TeleOp loop period, and the end
+ * of the period stops the OpMode, all as events of the clock. As with a replay, `Hardware.init`
+ * starts no background threads; the pose estimate is updated by an event at the odometry frequency
+ * instead.
+ *
+ * Runs on a workstation JVM through `main`, with the SDK libraries and a mockable android.jar (as
+ * used by local unit tests) on the classpath, as `./gradlew :TeamCode:simulate` sets it up.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates a simulation with the given seed and step size in ms, with the robot on the
+ *     starting position of Red Left
+ */
+class Simulator(val seed: Long = 0,
+                private val config: Config = Config(),
+                private val stepMs: Double = config.stepSize) {
+
+    // CONFIGURATION
+    class Config : ConfigUser("Simulator/config.properties") {
+        // Time
+        val stepSize = file.getDouble("StepSize")
+        val loopPeriod = file.getInteger("LoopPeriod")
+        val autonomousLength = file.getDouble("AutonomousLength")
+        val teleOpLength = file.getDouble("TeleOpLength")
+
+        // Motors
+        val stallTorque = file.getDouble("StallTorque")
+        val freeSpeed = file.getDouble("FreeSpeed")
+        val ticksPerRevolution = file.getDouble("EncoderTicksPerRevolution")
+        val velocityGain = file.getDouble("VelocityGain")
+        val positionGain = file.getDouble("PositionGain")
+        val targetTolerance = file.getInteger("TargetTolerance")
+        val flywheelInertia = file.getDouble("FlywheelInertia")
+
+        // Chassis
+        val robotMass = file.getDouble("RobotMass")
+        val robotWidth = file.getDouble("RobotWidth")
+        val robotLength = file.getDouble("RobotLength")
+        val trackWidth = file.getDouble("TrackWidth")
+        val wheelBase = file.getDouble("WheelBase")
+        val wheelDiameter = file.getDouble("WheelDiameter")
+        val linearDamping = file.getDouble("LinearDamping")
+        val angularDamping = file.getDouble("AngularDamping")
+
+        // Servos
+        val servoSpeed = file.getDouble("ServoSpeed")
+        val servoStartPosition = file.getDouble("ServoStartPosition")
+        val jewelArmStartPosition = file.getDouble("JewelArmStartPosition")
+
+        // Field
+        val fieldSize = file.getDouble("FieldSize")
+        val startRedLeft = file.getPose("StartRedLeft")
+        val startRedRight = file.getPose("StartRedRight")
+        val startBlueLeft = file.getPose("StartBlueLeft")
+        val startBlueRight = file.getPose("StartBlueRight")
+
+        // Jewels
+        val armLoweredBelow = file.getDouble("JewelArmLoweredBelow")
+        val sensorX = file.getDouble("JewelSensorX")
+        val sensorY = file.getDouble("JewelSensorY")
+        val jewelRadius = file.getDouble("JewelRadius")
+        val frontJewelGap = file.getDouble("FrontJewelGap")
+        val rearJewelGap = file.getDouble("RearJewelGap")
+        val senseRange = file.getDouble("SenseRange")
+        val jewelReading = file.getInteger("JewelReading")
+        val ambientReading = file.getInteger("AmbientReading")
+
+        // Pictograph
+        val pictographX = file.getDouble("PictographX")
+        val pictographY = file.getDouble("PictographY")
+        val cameraHeading = file.getDouble("CameraHeading")
+        val cameraFieldOfView = file.getDouble("CameraFieldOfView")
+        val cameraRange = file.getDouble("CameraRange")
+
+        // x, y in inches and the heading in degrees
+        private fun ConfigFile.getPose(key: String): Pose {
+            val (x, y, heading) = getStringList(key).map { it.trim().toDouble() }
+            return Pose(x, y, Math.toRadians(heading))
+        }
+    }
+
+    companion object {
+        /**
+         * Runs each OpMode class given for the length of its period, and prints a report of each.
+         * Exits with status 1 if any OpMode threw.
+         *
+         * Arguments: `[--config <dir>] [--seed <n>] [--step <ms>] <OpMode class>...`. The config
+         * directory defaults to the storage directory of the source tree. It is copied, with the
+         * task statistics beside it, before every run, so that runs start alike and never change
+         * the originals. The seed defaults to 0, and the step size to the configured one.
+         */
+        @JvmStatic
+        fun main(args: Array<String>) {
+            var configDir = File("TeamCode/src/main/storage")
+            var seed = 0L
+            var stepMs: Double? = null
+            val opModes = ArrayList<String>()
+            var i = 0
+            while (i < args.size) {
+                when (args[i]) {
+                    "--config" -> configDir = File(args[++i])
+                    "--seed" -> seed = args[++i].toLong()
+                    "--step" -> stepMs = args[++i].toDouble()
+                    else -> opModes.add(args[i])
+                }
+                i++
+            }
+
+            // Must be set before ConfigFile is first used
+            val workDir = createTempDir("simulation")
+            val workConfig = File(workDir, "config")
+            System.setProperty(ConfigFile.CONFIG_PATH_PROPERTY, workConfig.path)
+
+            var succeededAll = true
+            for (name in opModes) {
+                workDir.deleteRecursively()
+                configDir.copyRecursively(workConfig)
+                val statsFile = DecisionMaker.Config().statsFile
+                val stats = File(configDir.absoluteFile.parentFile, statsFile)
+                if (stats.isFile) stats.copyTo(File(workDir, statsFile))
+
+                val report = try {
+                    val config = Config()
+                    Simulator(seed, config, stepMs ?: config.stepSize)
+                            .run(Class.forName(name).newInstance() as OpMode)
+                } catch (exc: Exception) {
+                    println("$name: cannot simulate, ${exc.message}")
+                    succeededAll = false
+                    continue
+                }
+                println(report)
+                if (report.error != null) succeededAll = false
+            }
+            workDir.deleteRecursively()
+            if (!succeededAll) System.exit(1)
+        }
+    }
+
+    /**
+     * A jewel on the field, in field inches.
+     */
+    class Jewel(val color: AllianceColor, val x: Double, val y: Double) {
+        var isKnocked: Boolean = false
+            internal set
+    }
+
+    /**
+     * The outcome of a simulated run.
+     *
+     * @property knocked The colors of the jewels knocked off
+     * @property vuMark  The VuMark of the match
+     * @property read    The VuMark the OpMode read, if it is an Autonomous
+     * @property error   What the OpMode threw, if anything
+     */
+    class Report(val opMode: String,
+                 val seed: Long,
+                 val start: Pose,
+                 val end: Pose,
+                 val estimate: Pose?,
+                 val knocked: List<AllianceColor>,
+                 val vuMark: RelicRecoveryVuMark,
+                 val read: RelicRecoveryVuMark?,
+                 val simulatedSeconds: Double,
+                 val wallSeconds: Double,
+                 val error: Throwable?) {
+
+        override fun toString() = buildString {
+            append("$opMode (seed $seed): %.1f s simulated in %.2f s\n".format(simulatedSeconds, wallSeconds))
+            append("  moved from $start to $end")
+            if (estimate != null) append(", odometry estimated $estimate")
+            append("\n  jewels knocked: ${if (knocked.isEmpty()) "none" else knocked.joinToString()}")
+            append("\n  VuMark $vuMark, read ${read ?: "nothing"}")
+            if (error != null) append("\n  threw $error")
+        }
+    }
+
+    // Telemetry is sent nowhere
+    private object NoServices : OpModeServices {
+        override fun refreshUserTelemetry(telemetry: TelemetryMessage, sInterval: Double) {}
+        override fun requestOpModeStop(opModeToStopIfActive: OpMode) {}
+    }
+
+    private val random = Random(seed)
+    private val motorModel = SimMotor.Model(
+            config.stallTorque,
+            config.freeSpeed * 2 * Math.PI / 60,
+            config.ticksPerRevolution,
+            config.velocityGain,
+            config.positionGain,
+            config.targetTolerance)
+
+    // Drive motors in MotorPtr order
+    private val driveMotors = listOf("FrontLeft", "FrontRight", "RearLeft", "RearRight").map { SimMotor(it, motorModel) }
+    private val flywheels = listOf("FlywheelLeft", "FlywheelRight").map { SimMotor(it, motorModel) }
+    private val jewelArm = SimServo("JewelArm", config.servoSpeed, config.jewelArmStartPosition)
+    private val servos = listOf("BucketPour", "OffsideBucketPour", "RectifierLeft", "RectifierRight")
+            .map { SimServo(it, config.servoSpeed, config.servoStartPosition) } + jewelArm
+    private val jewelSensor = SimColorSensor("JewelSensor")
+
+    val chassis = MecanumChassis(driveMotors, config)
+
+    /**
+     * The simulated devices under the names that `Hardware.init` uses.
+     */
+    val hardwareMap = HardwareMap(null).apply {
+        (driveMotors + flywheels).forEach { dcMotor.put(it.deviceName, it) }
+        servos.forEach { servo.put(it.deviceName, it) }
+        colorSensor.put(jewelSensor.deviceName, jewelSensor)
+    }
+
+    val vuforia = SimVuforia(this)
+
+    /**
+     * The simulated time, which passes whenever it is slept.
+     */
+    val clock = VirtualClock()
+
+    /**
+     * Sets the gamepads for the given number of seconds since the OpMode started. Called every
+     * TeleOp loop period.
+     */
+    var gamepadScript: (Double, Gamepad, Gamepad) -> Unit = { _, _, _ -> }
+
+    val gamepad1 = Gamepad()
+    val gamepad2 = Gamepad()
+
+    /**
+     * The VuMark shown by the pictograph in this match.
+     */
+    val vuMark: RelicRecoveryVuMark = listOf(
+            RelicRecoveryVuMark.LEFT, RelicRecoveryVuMark.CENTER, RelicRecoveryVuMark.RIGHT)[random.nextInt(3)]
+
+    // The front jewel is red or blue at random
+    private val isFrontJewelRed = random.nextBoolean()
+
+    var jewels: List<Jewel> = emptyList()
+        private set
+
+    // Where the pictograph is, in field inches
+    private var pictographX = 0.0
+    private var pictographY = 0.0
+
+    private var startNanos = 0L
+    private var estimate: Pose? = null
+
+    init {
+        place(config.startRedLeft)
+
+        val stepNanos = Math.round(stepMs * 1000000)
+        clock.every(stepNanos) { step(stepNanos / 1e9) }
+        clock.every(Math.round(1e9 / PoseEstimator.Config().odometryFrequency)) {
+            Hardware.poseEstimator?.let {
+                it.update()
+                estimate = it.pose
+            }
+        }
+        clock.every(config.loopPeriod * 1000000L) {
+            gamepadScript((clock.nanos - startNanos) / 1e9, gamepad1, gamepad2)
+        }
+    }
+
+    /**
+     * @return The configured starting pose of the given alliance and side
+     */
+    fun startPose(alliance: AllianceColor, isStartingLeft: Boolean): Pose = when (alliance) {
+        AllianceColor.RED -> if (isStartingLeft) config.startRedLeft else config.startRedRight
+        AllianceColor.BLUE -> if (isStartingLeft) config.startBlueLeft else config.startBlueRight
+    }
+
+    /**
+     * Puts the robot at rest at the given pose, with the jewels beside its lowered jewel sensor and
+     * the pictograph where it is from that pose.
+     */
+    fun place(start: Pose) {
+        chassis.pose = start
+        val sensor = start.moved(Vector2D(config.sensorX, config.sensorY))
+        val front = sensor.moved(Vector2D(0.0, config.jewelRadius + config.frontJewelGap))
+        val rear = sensor.moved(Vector2D(0.0, -config.jewelRadius - config.rearJewelGap))
+        jewels = listOf(
+                Jewel(if (isFrontJewelRed) AllianceColor.RED else AllianceColor.BLUE, front.x, front.y),
+                Jewel(if (isFrontJewelRed) AllianceColor.BLUE else AllianceColor.RED, rear.x, rear.y))
+        val pictograph = start.moved(Vector2D(config.pictographX, config.pictographY))
+        pictographX = pictograph.x
+        pictographY = pictograph.y
+    }
+
+    /**
+     * Whether the pictograph is within the camera's range and field of view.
+     */
+    val isPictographVisible: Boolean get() {
+        val pose = chassis.pose
+        if (Math.hypot(pictographX - pose.x, pictographY - pose.y) > config.cameraRange) return false
+        // Bearings are counter-clockwise from facing positive y, like headings
+        val bearing = Math.atan2(-(pictographX - pose.x), pictographY - pose.y)
+        val camera = pose.heading + Math.toRadians(config.cameraHeading)
+        return Math.abs(Angle.normalize(bearing - camera)) <= Math.toRadians(config.cameraFieldOfView) / 2
+    }
+
+    private fun step(seconds: Double) {
+        servos.forEach { it.step(seconds) }
+        flywheels.forEach { it.step(seconds, config.flywheelInertia) }
+        chassis.step(seconds)
+        updateJewels()
+    }
+
+    // The sensor sees a jewel near it, and the arm knocks a jewel off when the sensor runs into it
+    private fun updateJewels() {
+        val reading = if (jewelArm.actualPosition < config.armLoweredBelow) {
+            val sensor = chassis.pose.moved(Vector2D(config.sensorX, config.sensorY))
+            var seen: Jewel? = null
+            for (jewel in jewels) {
+                if (jewel.isKnocked) continue
+                val distance = Math.hypot(jewel.x - sensor.x, jewel.y - sensor.y)
+                if (distance < config.jewelRadius) {
+                    jewel.isKnocked = true
+                } else if (distance <= config.jewelRadius + config.senseRange) {
+                    seen = jewel
+                }
+            }
+            seen?.color
+        } else null
+
+        with(jewelSensor) {
+            values[0] = if (reading == AllianceColor.RED) config.jewelReading else config.ambientReading
+            values[1] = config.ambientReading
+            values[2] = if (reading == AllianceColor.BLUE) config.jewelReading else config.ambientReading
+            values[3] = if (reading != null) config.jewelReading else config.ambientReading
+        }
+    }
+
+    /**
+     * Runs the given OpMode for the given seconds of simulated time after its start, by default
+     * the length of its period. An Autonomous starts from its alliance's starting position, and
+     * gets the seed of the simulation and the simulated VuMark reader.
+     */
+    fun run(opMode: OpMode,
+            seconds: Double = if (opMode is LinearOpMode) config.autonomousLength else config.teleOpLength): Report {
+        opMode.hardwareMap = hardwareMap
+        opMode.gamepad1 = gamepad1
+        opMode.gamepad2 = gamepad2
+        opMode.internalOpModeServices = NoServices
+        if (opMode is AutonomousBase) {
+            place(startPose(opMode.allianceColor, opMode.isStartingLeft))
+            opMode.randomSeed = seed
+            opMode.vuforiaProvider = { vuforia }
+        }
+        val start = chassis.pose
+
+        Hardware.clock = clock
+        val wallStart = System.nanoTime()
+        var error: Throwable? = null
+        try {
+            if (opMode is LinearOpMode) {
+                // Started before runOpMode, so initialization counts toward the period
+                startNanos = clock.nanos
+                clock.schedule(Math.round(seconds * 1e9)) { opMode.stop() }
+                opMode.start()
+                opMode.runOpMode()
+            } else {
+                opMode.init()
+                startNanos = clock.nanos
+                val endNanos = startNanos + Math.round(seconds * 1e9)
+                opMode.start()
+                while (clock.nanos < endNanos) {
+                    opMode.loop()
+                    clock.sleep(config.loopPeriod.toLong())
+                }
+                opMode.stop()
+            }
+        } catch (exc: Exception) {
+            error = exc
+        } finally {
+            Hardware.clock = Clock.REAL
+        }
+
+        return Report(opMode.javaClass.simpleName, seed, start, chassis.pose, estimate,
+                jewels.filter { it.isKnocked }.map { it.color }, vuMark, (opMode as? AutonomousBase)?.vuMark,
+                (clock.nanos - startNanos) / 1e9, (System.nanoTime() - wallStart) / 1e9, error)
+    }
+}
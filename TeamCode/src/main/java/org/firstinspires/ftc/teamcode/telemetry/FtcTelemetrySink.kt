@@ -0,0 +1,66 @@
+package org.firstinspires.ftc.teamcode.telemetry
+
+import org.firstinspires.ftc.robotcore.external.Func
+import org.firstinspires.ftc.robotcore.external.Telemetry as FtcTelemetry
+
+/**
+ * Sends the lines of Telemetry to the SDK's telemetry.
+ *
+ * The log is the SDK's telemetry log, whose capacity bounds it; lines that stay are retained SDK
+ * items. Supplied lines are SDK items with value producers, which the SDK only evaluates when it
+ * composes a transmission.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+class FtcTelemetrySink(private val telem: FtcTelemetry) : TelemetrySink {
+
+    private class ItemLine(val item: FtcTelemetry.Item) : TelemetrySink.Line {
+        override fun setValue(value: Any) {
+            item.setValue(value)
+        }
+    }
+
+    override var isAutoClear: Boolean
+        get() = telem.isAutoClear
+        set(value) {
+            telem.isAutoClear = value
+        }
+
+    override var msTransmissionInterval: Int
+        get() = telem.msTransmissionInterval
+        set(value) {
+            telem.msTransmissionInterval = value
+        }
+
+    override var logCapacity: Int
+        get() = telem.log().capacity
+        set(value) {
+            telem.log().capacity = value
+        }
+
+    override fun log(entry: String) {
+        telem.log().add(entry)
+    }
+
+    override fun addData(caption: String, value: Any) {
+        telem.addData(caption, value)
+    }
+
+    override fun addRetained(caption: String, value: Any): TelemetrySink.Line =
+            ItemLine(telem.addData(caption, value).setRetained(true))
+
+    // Items with a value producer are retained by the SDK
+    override fun addSupplied(caption: String, producer: () -> Any): TelemetrySink.Line =
+            ItemLine(telem.addData(caption, Func<Any> { producer() }))
+
+    override fun remove(line: TelemetrySink.Line) {
+        telem.removeItem((line as ItemLine).item)
+    }
+
+    override fun update() {
+        telem.update()
+    }
+}
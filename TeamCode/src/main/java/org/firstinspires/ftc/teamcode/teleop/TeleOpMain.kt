@@ -42,6 +42,10 @@ class TeleOpMain : OpMode() {
 
     private lateinit var config: Config
 
+    // Shown through telemetry items, which only format them when telemetry is sent
+    private var moveVec = Vector2D(0.0, 0.0)
+    private var turnPower = 0.0
+
     override fun init() {
         // Initialize systems
         config = Config()
@@ -54,22 +58,28 @@ class TeleOpMain : OpMode() {
 
         // Lock the jewel arm
         Hardware.knocker.raiseArm()
+
+        Hardware.telemetry.item("Move vector") { moveVec }
+        Hardware.telemetry.item("Turn power", "%.3f") { turnPower }
     }
 
     override fun loop() {
+        // End the previous loop before its sensor readings are discarded
+        Hardware.endCycle()
+        // Sensor readings are shared within one loop
+        Hardware.sensors.beginCycle()
+
         // Gamepad mappings
         with(Hardware) {
             fun Boolean.int() = if (this) 1.0 else 0.0
 
             with(gamepad1) {
                 // Drivetrain movement
-                val moveVec = Vector2D(
+                moveVec = Vector2D(
                         left_stick_x.toDouble(),
                         -left_stick_y.toDouble())
-                telemetry.write("Move vector", moveVec.toString())
 
-                val turnPower = right_stick_x * config.motorPower * config.turnSpeed
-                telemetry.write("Turn power", turnPower.toString())
+                turnPower = right_stick_x * config.motorPower * config.turnSpeed
 
                 drivetrain.actuate(moveVec, moveVec.length() / Math.sqrt(2.0) * config.motorPower,
                         true, turnPower)
@@ -117,30 +127,12 @@ class TeleOpMain : OpMode() {
         Hardware.telemetry.flush()
     }
 
+    override fun stop() {
+        Hardware.shutdown()
+    }
+
     // A button toggle collectorIn
     // Up/down lift
     // right stick up / down: bucket eject
     // right bumper open, left bumper close clamp
-
-    /**
-     * A class that retains input state and performs a given callback when the state changes.
-     */
-    class ChangeBasedInputColumn<out T>(private val input: () -> T) {
-        private var previousState = input()
-
-        /**
-         * Calls the given lambda if the input value has changed. Should be called only once during
-         * each loop.
-         */
-        fun onChange(todo: (T, T) -> Unit): T {
-            val newState = input()
-
-            if (newState != previousState) {
-                todo(previousState, newState)
-                previousState = newState
-            }
-
-            return newState
-        }
-    }
 }
\ No newline at end of file
@@ -32,5 +32,7 @@ class EncoderTest : LinearOpMode() {
             move(Vector2D(1.0, 2.0))
             turn(Angle.toRadians(90.0))
         }
+
+        Hardware.shutdown()
     }
 }
\ No newline at end of file
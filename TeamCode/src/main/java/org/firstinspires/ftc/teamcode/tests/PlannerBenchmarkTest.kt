@@ -0,0 +1,35 @@
+package org.firstinspires.ftc.teamcode.tests
+
+import com.qualcomm.robotcore.eventloop.opmode.LinearOpMode
+import com.qualcomm.robotcore.eventloop.opmode.TeleOp
+import com.qualcomm.robotcore.util.RobotLog
+import org.firstinspires.ftc.teamcode.autonomous.PlannerBenchmark
+
+/**
+ * Runs PlannerBenchmark on the robot controller, whose CPU is the one that matters in a match.
+ * Does not use any hardware.
+ *
+ * @author Michael Peng
+ * For team: 4410
+ *
+ */
+@TeleOp(name = "PlannerBenchmark", group = "Pragmaticos")
+class PlannerBenchmarkTest : LinearOpMode() {
+
+    override fun runOpMode() {
+        waitForStart()
+
+        // Keep the results of every task count on screen
+        telemetry.isAutoClear = false
+        telemetry.addLine("Planner decision time by task count")
+        telemetry.update()
+
+        PlannerBenchmark.run { line ->
+            RobotLog.ii("PlannerBenchmark", line)
+            telemetry.addLine(line)
+            telemetry.update()
+        }
+
+        while (opModeIsActive()) idle()
+    }
+}
@@ -0,0 +1,228 @@
+package org.firstinspires.ftc.teamcode.util
+
+import com.qualcomm.robotcore.util.RobotLog
+import org.firstinspires.ftc.teamcode.config.ConfigUser
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * A logger for control paths: messages are queued into a preallocated ring buffer and written to
+ * RobotLog by a background thread, so logging never waits for logcat.
+ *
+ * A message is a format with `{}` placeholders and up to four double arguments, which are stored
+ * as they are and only turned into a string on the background thread. Logging at a disabled level
+ * costs one comparison; the arguments are not even evaluated with the lambda variant.
+ *
+ * Any thread may log. When the buffer is full, messages are dropped and counted rather than
+ * waiting for room.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+object AsyncLog {
+
+    // CONFIGURATION
+    class Config : ConfigUser("Hardware/config.properties") {
+        val logLevel = Level.valueOf(file["LogLevel"])
+    }
+
+    /**
+     * The levels of messages, in increasing severity.
+     */
+    enum class Level { VERBOSE, DEBUG, INFO, WARN, ERROR }
+
+    /**
+     * The number of messages the buffer holds; a power of two.
+     */
+    const val CAPACITY = 1024
+
+    private const val MAX_ARGS = 4
+    // How long the writer sleeps when the buffer is empty
+    private const val DRAIN_PERIOD_NANOS = 20_000_000L
+
+    /**
+     * Messages below this level are discarded.
+     */
+    @Volatile var minLevel: Level = Level.INFO
+
+    // Sequence of the next message to claim, and of the next message to write out
+    private val head = AtomicLong()
+    private val tail = AtomicLong()
+    // Sequence + 1 of the message each slot holds once it is complete
+    private val published = AtomicLongArray(CAPACITY)
+
+    private val levels = arrayOfNulls<Level>(CAPACITY)
+    private val tags = arrayOfNulls<String>(CAPACITY)
+    private val formats = arrayOfNulls<String>(CAPACITY)
+    private val argCounts = IntArray(CAPACITY)
+    private val args = DoubleArray(CAPACITY * MAX_ARGS)
+
+    // Only used by the thread that writes messages out
+    private val builder = StringBuilder(256)
+
+    @Volatile private var writer: Thread? = null
+
+    // A writer that had not exited when stop() stopped waiting for it
+    private var stoppingWriter: Thread? = null
+
+    /**
+     * The number of messages dropped because the buffer was full.
+     */
+    val dropped: Long get() = droppedCount.get()
+    private val droppedCount = AtomicLong()
+
+    /**
+     * Whether messages of the given level are logged.
+     */
+    fun isEnabled(level: Level): Boolean = level >= minLevel
+
+    fun log(level: Level, tag: String, format: String) {
+        if (level >= minLevel) enqueue(level, tag, format, 0, 0.0, 0.0, 0.0, 0.0)
+    }
+
+    fun log(level: Level, tag: String, format: String, a: Double) {
+        if (level >= minLevel) enqueue(level, tag, format, 1, a, 0.0, 0.0, 0.0)
+    }
+
+    fun log(level: Level, tag: String, format: String, a: Double, b: Double) {
+        if (level >= minLevel) enqueue(level, tag, format, 2, a, b, 0.0, 0.0)
+    }
+
+    fun log(level: Level, tag: String, format: String, a: Double, b: Double, c: Double) {
+        if (level >= minLevel) enqueue(level, tag, format, 3, a, b, c, 0.0)
+    }
+
+    fun log(level: Level, tag: String, format: String, a: Double, b: Double, c: Double, d: Double) {
+        if (level >= minLevel) enqueue(level, tag, format, 4, a, b, c, d)
+    }
+
+    /**
+     * Logs a message that is only built if the level is enabled, for messages that need more than
+     * numbers. The message is built on the calling thread.
+     */
+    inline fun log(level: Level, tag: String, message: () -> String) {
+        if (isEnabled(level)) log(level, tag, message())
+    }
+
+    private fun enqueue(level: Level, tag: String, format: String, count: Int,
+                        a: Double, b: Double, c: Double, d: Double) {
+        // Claim a sequence, unless its slot may still be waiting to be written out
+        var sequence: Long
+        do {
+            sequence = head.get()
+            if (sequence - tail.get() >= CAPACITY) {
+                droppedCount.incrementAndGet()
+                return
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1))
+
+        val slot = (sequence and (CAPACITY - 1).toLong()).toInt()
+        levels[slot] = level
+        tags[slot] = tag
+        formats[slot] = format
+        argCounts[slot] = count
+        val base = slot * MAX_ARGS
+        args[base] = a
+        args[base + 1] = b
+        args[base + 2] = c
+        args[base + 3] = d
+        // Makes the writes above visible to the writer thread
+        published.lazySet(slot, sequence + 1)
+    }
+
+    /**
+     * Starts the thread that writes messages out, if it is not running. Does not start it while the
+     * previous one, which stop() gave up waiting for, is still writing.
+     */
+    @Synchronized
+    fun start() {
+        if (writer != null) return
+        // Only one thread may write messages out at a time
+        stoppingWriter?.let {
+            it.join(100)
+            if (it.isAlive) return
+        }
+        stoppingWriter = null
+        writer = Thread({
+            while (!Thread.currentThread().isInterrupted) {
+                if (drain() == 0) LockSupport.parkNanos(DRAIN_PERIOD_NANOS)
+            }
+        }, "AsyncLog").apply {
+            isDaemon = true
+            start()
+        }
+    }
+
+    /**
+     * Stops the writer thread and writes out the messages that are left. Called from the OpMode
+     * thread, so it waits for the writer only briefly.
+     */
+    @Synchronized
+    fun stop() {
+        val thread = writer ?: return
+        thread.interrupt()
+        thread.join(100)
+        writer = null
+        // Only one thread may write messages out at a time
+        if (thread.isAlive) {
+            stoppingWriter = thread
+            RobotLog.ww("AsyncLog", "Writer did not stop; the last messages may be missing")
+        } else {
+            drain()
+        }
+        if (dropped > 0) RobotLog.ww("AsyncLog", "$dropped messages dropped")
+    }
+
+    // Writes out every complete message in order; returns how many
+    private fun drain(): Int {
+        var count = 0
+        while (true) {
+            val sequence = tail.get()
+            val slot = (sequence and (CAPACITY - 1).toLong()).toInt()
+            if (published.get(slot) != sequence + 1) return count
+
+            val message = render(slot)
+            val tag = tags[slot]!!
+            when (levels[slot]!!) {
+                Level.VERBOSE -> RobotLog.vv(tag, message)
+                Level.DEBUG -> RobotLog.dd(tag, message)
+                Level.INFO -> RobotLog.ii(tag, message)
+                Level.WARN -> RobotLog.ww(tag, message)
+                Level.ERROR -> RobotLog.ee(tag, message)
+            }
+            tags[slot] = null
+            formats[slot] = null
+            // Frees the slot for producers
+            tail.lazySet(sequence + 1)
+            count++
+        }
+    }
+
+    // Replaces the placeholders of the slot's format with its arguments
+    private fun render(slot: Int): String {
+        val format = formats[slot]!!
+        val count = argCounts[slot]
+        builder.setLength(0)
+        var start = 0
+        var used = 0
+        while (used < count) {
+            val placeholder = format.indexOf("{}", start)
+            if (placeholder < 0) break
+            builder.append(format, start, placeholder)
+            val value = args[slot * MAX_ARGS + used]
+            // Whole numbers, such as encoder ticks, without a fraction
+            if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+                builder.append(value.toLong())
+            } else {
+                builder.append(value)
+            }
+            start = placeholder + 2
+            used++
+        }
+        builder.append(format, start, format.length)
+        return builder.toString()
+    }
+}
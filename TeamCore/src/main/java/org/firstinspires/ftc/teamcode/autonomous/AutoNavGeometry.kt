@@ -0,0 +1,98 @@
+package org.firstinspires.ftc.teamcode.autonomous
+
+import org.firstinspires.ftc.teamcode.AllianceColor
+import org.firstinspires.ftc.teamcode.drivetrain.Pose
+import org.locationtech.jts.algorithm.Angle
+import org.locationtech.jts.math.Vector2D
+
+/**
+ * The geometry behind the movements of AutoNav: where the cryptobox and its columns are from the
+ * starting position, for a given alliance and balancing stone.
+ *
+ * Vectors and poses are relative to the front of the robot in its starting position, with the
+ * starting position as the origin (see `AutoNav.Config`).
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates the geometry for the given alliance and starting position, with the given
+ *     vectors to the middle column from the corner and centered starting points (as on RED), and
+ *     width between columns in inches
+ */
+class AutoNavGeometry(val alliance: AllianceColor,
+                      val isStartingLeft: Boolean,
+                      private val cryptoboxPositionCorner: Vector2D,
+                      private val cryptoboxPositionCentered: Vector2D,
+                      private val cryptoboxWidth: Double) {
+
+    companion object {
+        /**
+         * Column offsets, in units of the cryptobox width, as seen when facing the cryptobox.
+         */
+        const val COLUMN_LEFT = -1
+        const val COLUMN_CENTER = 0
+        const val COLUMN_RIGHT = 1
+    }
+
+    val isStartingOnCorner: Boolean
+        get() = isStartingLeft == (alliance == AllianceColor.RED)
+
+    /**
+     * Currently performs the following to the given vector and returns the final modified output:
+     *
+     *  - Mirror across the x axis if on BLUE alliance
+     *
+     *  @param vec The initial vector to modify
+     *  @returns The final modified output
+     */
+    fun finalizeVector(vec: Vector2D): Vector2D {
+        // Pipeline operation requires clone
+        var out = Vector2D(vec)
+
+        if (alliance == AllianceColor.BLUE) {
+            out = Vector2D(out.x, -out.y)
+        }
+
+        return out
+    }
+
+    /**
+     * @return The vector to the middle column of the cryptobox, and the turn in degrees that
+     *     faces it afterwards
+     */
+    fun instructionsToCryptoBox(): Pair<Vector2D, Double> {
+        return if (isStartingOnCorner)
+        // Same rotation for CORNER of both sides
+            finalizeVector(cryptoboxPositionCorner) to -90.0
+        else
+        // Red needs to turn 180deg for CENTERED, Red is lined up already
+            finalizeVector(cryptoboxPositionCentered) to
+                    if (alliance == AllianceColor.RED) 0.0 else 180.0
+    }
+
+    /**
+     * @param column One of the COLUMN constants
+     * @return The vector from the middle column to the given one
+     */
+    fun instructionsToColumn(column: Int): Vector2D {
+        // NOTE: The robot MUST face the cryptobox before moving in this vector.
+        return Vector2D(column * cryptoboxWidth, 0.0)
+    }
+
+    /**
+     * The poses passed on the way to the given column of the cryptobox, in order.
+     * Movement along y comes first, then along x, then the turn to face the cryptobox and
+     *   finally the movement to the column.
+     *
+     * @param column One of the COLUMN constants
+     */
+    fun waypointsToCryptoBox(column: Int): List<Pose> {
+        val (movement, turnDeg) = instructionsToCryptoBox()
+        val alongY = Pose(0.0, movement.y, 0.0)
+        val alongX = Pose(movement.x, movement.y, 0.0)
+        val facing = alongX.turned(Angle.toRadians(turnDeg))
+        return listOf(alongY, alongX, facing, facing.moved(instructionsToColumn(column)))
+    }
+}
@@ -0,0 +1,242 @@
+package org.firstinspires.ftc.teamcode.autonomous
+
+import org.firstinspires.ftc.teamcode.config.ConfigFile
+import org.firstinspires.ftc.teamcode.config.ConfigUser
+import org.firstinspires.ftc.teamcode.io.Waiter
+import org.firstinspires.ftc.teamcode.telemetry.ITelemetry
+import org.firstinspires.ftc.teamcode.util.Clock
+import java.io.File
+
+/**
+ * Defines the strategic logic used by the robot to decide which task to accomplish in a given state.
+ * Decisions are made by TaskPlanner, which evaluates every ordering of the remaining tasks with
+ * a memoized search over bitmasks of tasks.
+ *
+ * Every run of a task is recorded in TaskStats, which persist across matches. The reliability and
+ * expected duration of each task are its annotation's guesses blended with these statistics, and
+ * with duration planning enabled, tasks are chosen to make the most expected points within the
+ * time left in the period.
+ *
+ * With budgets enabled, every task runs within its time budget, cut to the time left in the
+ * period. A task that exceeds it is cancelled at its next wait, the robot is put into a safe state
+ * and the run counts as a failure, so that the next decision is made with the time that is left.
+ *
+ * Tasks are performed on a context of type T, which on the robot is the AutonomousBase OpMode; the
+ * DecisionMaker itself depends on no hardware, so it also runs on a workstation JVM.
+ *
+ * @author Michael Peng
+ * For team: 4410
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates a DecisionMaker over the given tasks, which runs them through the given
+ *     waiter, reports to the given telemetry and calls enterSafeState after a task went wrong
+ */
+class DecisionMaker<in T>(tasks: List<TaskEntry<T>>,
+                          private val waiter: Waiter,
+                          private val telemetry: ITelemetry,
+                          private val enterSafeState: (T) -> Unit,
+                          private val config: Config = Config(),
+                          private val clock: Clock = waiter.clock) {
+
+    class Config : ConfigUser("DecisionMaker/config.properties") {
+        /**
+         * Whether to plan within the time left using expected durations, instead of discounting
+         * future tasks.
+         */
+        val useDurationPlanning = file.getBoolean("UseDurationPlanning")
+
+        /**
+         * How many runs the guesses in the Task annotations count as when blended with statistics.
+         */
+        val priorWeight = file.getDouble("PriorWeight")
+
+        /**
+         * The file of task statistics, in the directory that holds the config directory.
+         */
+        val statsFile = file["StatsFile"]
+
+        /**
+         * Whether tasks are cancelled when they exceed their time budget.
+         */
+        val useTaskBudgets = file.getBoolean("UseTaskBudgets")
+    }
+
+    // CONFIGURATIONS
+    companion object {
+        /**
+         * The discount factor ("urgency coefficient"), [[0, 1]], describes how the preference
+         * factor of tasks decay when they are planned to be executed in the future.
+         *
+         * This function determines the discount factor, optionally dynamically with dependence on
+         * how many seconds have passed since the Autonomous period began.
+         */
+        // The current function is linear (see TaskPlanner.discountAt), so that StrategyEvaluator
+        //   decides alike. A function rather than a lambda, which would box its argument and result
+        private fun discountFactor(elapsedSeconds: Double): Double = TaskPlanner.discountAt(elapsedSeconds)
+
+        /**
+         * The duration of the Autonomous period in seconds.
+         */
+        private val periodDuration = TaskPlanner.PERIOD_DURATION
+    }
+
+    /**
+     * Tasks available, immutable, by name. On the robot these are all functions of
+     * AutonomousBase.Tasks that have the Task annotation, as found at build time.
+     */
+    private val options: Map<String, TaskEntry<T>> = tasks.associateBy { it.name }
+
+    /**
+     * Called with the name of a task when it starts, and with an empty string when it ends.
+     */
+    var onTaskChanged: (String) -> Unit = {}
+
+    /**
+     * When the timer used for dynamic discountFactor determination and the time left started, in
+     * `clock.nanoTime()`. The timer starts when the DecisionMaker is instantiated, and again on
+     * `startPeriod()`.
+     */
+    private var periodStart = clock.nanoTime()
+
+    private val elapsedSeconds: Double get() = (clock.nanoTime() - periodStart) / 1e9
+
+    /**
+     * How each task has performed in past runs.
+     */
+    val stats = TaskStats(File(File(ConfigFile.CONFIG_PATH).parentFile, config.statsFile))
+
+    /**
+     * Names of the tasks by their index in the planner, in the order of options.
+     */
+    private val taskNames: Array<String> = options.keys.toTypedArray()
+
+    // Planner inputs by task index; reliabilities and durations follow the statistics
+    private val priorities = DoubleArray(taskNames.size) { getMetadataFromName(taskNames[it]).priority }
+    private val reliabilities = DoubleArray(taskNames.size)
+    private val durations = DoubleArray(taskNames.size)
+
+    private val planner = TaskPlanner(priorities, reliabilities, durations)
+
+    init {
+        for (index in taskNames.indices) {
+            updateEstimates(index)
+        }
+    }
+
+    /**
+     * Blends the annotation's guesses about the task at the given index with its statistics.
+     */
+    private fun updateEstimates(index: Int) {
+        val metadata = getMetadataFromName(taskNames[index])
+        val record = stats[taskNames[index]]
+        reliabilities[index] = record.reliability(metadata.reliability, config.priorWeight)
+        durations[index] = record.duration(metadata.duration, config.priorWeight)
+    }
+
+    /**
+     * Seconds left in the Autonomous period.
+     */
+    val timeLeft: Double get() = periodDuration - elapsedSeconds
+
+    /**
+     * Whether there is time left in the Autonomous period to start another task.
+     */
+    val hasTimeLeft: Boolean get() = timeLeft > 0.0
+
+    /**
+     * Restarts the timer; should be called when the Autonomous period begins.
+     */
+    fun startPeriod() {
+        periodStart = clock.nanoTime()
+    }
+
+    /**
+     * The mask of tasks that are not executed yet, by index in taskNames.
+     */
+    private var remaining = TaskPlanner.allTasks(taskNames.size)
+
+    private val pendingTasks = options.keys.toMutableSet()
+
+    /**
+     * A to-do list of tasks that are not executed yet.
+     * (Guaranteed to be a subset of options)
+     */
+    val nextTasks: Set<String> get() = pendingTasks
+
+    /**
+     * Whether there are remaining tasks in the to-do list.
+     *
+     * @see nextTasks
+     */
+    val isDone: Boolean get() = nextTasks.isEmpty()
+
+    /**
+     * Performs the task with the given name, passing it the given context as a parameter.
+     *
+     * @param name Name of the task the caller wishes to execute
+     * @param context The instance to pass to the task method
+     * @return `null` when name parameter not in options or when task threw an exception,
+     *      otherwise whether the task succeeded; false if it exceeded its time budget
+     */
+    fun doTask(name: String, context: T): Boolean? {
+        return if (pendingTasks.contains(name)) {
+            val index = taskNames.indexOf(name)
+            val start = clock.nanoTime()
+            // If name in nextTasks, then it's in options
+            val task = options.getValue(name)
+            onTaskChanged(name)
+            val result = try {
+                if (config.useTaskBudgets) {
+                    val budgetMs = (Math.min(task.metadata.budget, timeLeft) * 1000).toLong()
+                    waiter.withBudget(Math.max(budgetMs, 0)) { task.perform(context) }
+                } else {
+                    task.perform(context)
+                }
+            } catch (exc: Waiter.BudgetExpiredException) {
+                telemetry.warning("Task $name cancelled: ${exc.message}")
+                enterSafeState(context)
+                false
+            } catch (exc: Exception) {
+                telemetry.error("doTask exception: ${exc.message}")
+                enterSafeState(context)
+                null
+            } finally {
+                onTaskChanged("")
+            }
+
+            // Learn from the run, whatever its outcome
+            if (!stats.record(name, (clock.nanoTime() - start) / 1e9, result == true)) {
+                telemetry.warning("Task statistics could not be saved")
+            }
+            updateEstimates(index)
+
+            // If the task was successful, then remove it from the set of remaining ones
+            if (result == true) {
+                pendingTasks.remove(name)
+                remaining = remaining and (1 shl index).inv()
+            }
+
+            result
+        } else null
+    }
+
+    private fun getMetadataFromName(name: String) = options[name]!!.metadata
+
+    /**
+     * Depending on the reliability and priority of each task, pick the next task to execute.
+     * With duration planning, their expected durations and the time left are considered too.
+     *
+     * @return `null` if there are no tasks remaining to do, otherwise the name of the chosen task
+     */
+    fun nextTask(): String? {
+        if (this.isDone)
+            return null
+
+        val index = if (config.useDurationPlanning)
+            planner.nextWithinTime(remaining, timeLeft)
+        else
+            planner.next(remaining, discountFactor(elapsedSeconds))
+        return taskNames[index]
+    }
+}
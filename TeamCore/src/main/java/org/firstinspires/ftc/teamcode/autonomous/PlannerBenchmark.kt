@@ -0,0 +1,90 @@
+package org.firstinspires.ftc.teamcode.autonomous
+
+import java.util.Random
+
+/**
+ * Measures how the time of one TaskPlanner decision grows with the number of tasks, using
+ * synthetic tasks with random priorities and reliabilities.
+ * For small task counts, the recursive search that DecisionMaker used before is measured too.
+ *
+ * Runs on the robot through the PlannerBenchmarkTest OpMode, or on any JVM through `main`.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+object PlannerBenchmark {
+
+    /**
+     * The largest task count for which the recursive search is measured; it takes factorial time.
+     */
+    private const val MAX_RECURSIVE_TASKS = 8
+
+    private const val DISCOUNT = 0.9
+
+    /**
+     * Runs the benchmark for every task count in the given range.
+     *
+     * @param taskCounts The numbers of synthetic tasks to measure
+     * @param report     Receives one line of results per task count
+     */
+    fun run(taskCounts: IntRange = 4..20, report: (String) -> Unit) {
+        val random = Random(4410)
+        for (count in taskCounts) {
+            val priorities = DoubleArray(count) { random.nextDouble() }
+            val reliabilities = DoubleArray(count) { random.nextDouble() }
+            val planner = TaskPlanner(priorities, reliabilities)
+            val all = TaskPlanner.allTasks(count)
+
+            // Repeat small cases until the measurement takes long enough to be meaningful
+            val repetitions = Math.max(1, (1 shl 20) / ((1 shl count) * count))
+            planner.next(all, DISCOUNT)
+            val start = System.nanoTime()
+            var choice = 0
+            repeat(repetitions) { choice = planner.next(all, DISCOUNT) }
+            val dpMicros = (System.nanoTime() - start) / 1000.0 / repetitions
+
+            val line = StringBuilder("%2d tasks: %10.1f us per decision (task %d)".format(count, dpMicros, choice))
+            if (count <= MAX_RECURSIVE_TASKS) {
+                val recursiveStart = System.nanoTime()
+                val recursiveChoice = recursiveNext(all, priorities, reliabilities)
+                val recursiveMicros = (System.nanoTime() - recursiveStart) / 1000.0
+                line.append(", recursive %10.1f us (task %d)".format(recursiveMicros, recursiveChoice))
+            }
+            report(line.toString())
+        }
+    }
+
+    /**
+     * The search DecisionMaker used before TaskPlanner, kept as a reference for comparison.
+     */
+    private fun recursiveNext(all: Int, priorities: DoubleArray, reliabilities: DoubleArray): Int {
+        val tasks = (0 until priorities.size).filter { all and (1 shl it) != 0 }.toSet()
+
+        fun value(state: Set<Int>, depth: Int = 0): Double = when (state.size) {
+            0 -> TaskPlanner.COMPLETION_VALUE
+            1 -> priorities[state.first()] * reliabilities[state.first()] * Math.pow(DISCOUNT, depth.toDouble())
+            else -> state.map { value(state - it, depth + 1) }.sum()
+        }
+
+        // Not maxBy, which returns null for no tasks in this version of Kotlin but not in later ones,
+        //   and not maxByOrNull, which this version does not have yet
+        var best = -1
+        var bestValue = Double.NEGATIVE_INFINITY
+        for (task in tasks) {
+            val taskValue = value(tasks - task)
+            if (taskValue > bestValue) {
+                best = task
+                bestValue = taskValue
+            }
+        }
+        return best
+    }
+
+    @JvmStatic
+    fun main(args: Array<String>) {
+        val counts = if (args.size == 2) args[0].toInt()..args[1].toInt() else 4..20
+        run(counts) { println(it) }
+    }
+}
@@ -0,0 +1,314 @@
+package org.firstinspires.ftc.teamcode.autonomous
+
+import java.io.File
+import java.io.FileReader
+import java.util.Properties
+import java.util.Random
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveTask
+
+/**
+ * Estimates the score of Autonomous strategies by simulating many matches against stochastic
+ * models of the tasks, without any hardware.
+ *
+ * A simulated match follows AutonomousBase.runTasks: either DecisionMaker picks every task, or the
+ * predefined sequence runs until a task fails and DecisionMaker takes over as the fail-safe. Tasks
+ * are picked by TaskPlanner, like DecisionMaker does. Each run of a task succeeds with its
+ * reliability and takes a random duration around its expected one; with budgets, it is cut off
+ * (and fails) at its budget. A run that is still going when the period ends scores nothing.
+ *
+ * Matches are simulated in parallel with fork/join. Every batch of matches has its own random
+ * numbers, seeded by its position, so the results only depend on the seed and not on the threads.
+ *
+ * Runs on any JVM through `main`, such as with `./gradlew :TeamCore:evaluateStrategies`. The tasks
+ * are those of TaskCatalog, which only holds their metadata.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates an evaluator for the given task models, running on the given pool
+ */
+class StrategyEvaluator(private val models: List<TaskModel>,
+                        private val pool: ForkJoinPool = ForkJoinPool.commonPool()) {
+
+    companion object {
+        /**
+         * The points of all tasks together; task priorities are fractions of it.
+         */
+        const val TOTAL_POINTS = 85.0
+
+        /**
+         * The spread of task durations when not given, as a ratio of standard deviation to mean.
+         */
+        const val DEFAULT_SPREAD = 0.3
+
+        /**
+         * Matches simulated by one fork/join task without splitting further.
+         */
+        private const val BATCH_SIZE = 2048
+
+        // Decorrelates the seeds of neighbouring batches
+        private const val SEED_MIX = -7046029254386353131L
+
+        /**
+         * Simulates the strategies that AutonomousBase can be configured with and reports them.
+         *
+         * Arguments, all optional: the number of matches, the config directory (defaults to the
+         * storage directory of the source tree) and a TaskStats file to refine the task models with.
+         */
+        @JvmStatic
+        fun main(args: Array<String>) {
+            val matches = if (args.isNotEmpty()) args[0].toInt() else 200_000
+            val configDir = File(if (args.size > 1) args[1] else "TeamCode/src/main/storage")
+            val stats = if (args.size > 2) TaskStats(File(args[2])) else null
+
+            val autonomous = loadProperties(File(configDir, "AutonomousBase/config.properties"))
+            val decisions = loadProperties(File(configDir, "DecisionMaker/config.properties"))
+            val priorWeight = decisions.getProperty("PriorWeight").toDouble()
+
+            // What DecisionMaker would believe about each task
+            val models = TaskCatalog.metadata.map { (name, metadata) ->
+                val record = stats?.get(name)
+                TaskModel(name, metadata.priority,
+                        record?.reliability(metadata.reliability, priorWeight) ?: metadata.reliability,
+                        record?.duration(metadata.duration, priorWeight) ?: metadata.duration,
+                        DEFAULT_SPREAD, metadata.budget)
+            }
+            val evaluator = StrategyEvaluator(models)
+
+            val configured = Strategy("Configured",
+                    autonomous.getProperty("TaskSequence").split(","),
+                    autonomous.getProperty("UseDecisionMaker")!!.toBoolean(),
+                    decisions.getProperty("UseDurationPlanning")!!.toBoolean(),
+                    decisions.getProperty("UseTaskBudgets")!!.toBoolean())
+
+            val strategies = ArrayList<Strategy>()
+            strategies.add(configured)
+            for (durations in listOf(true, false)) {
+                for (budgets in listOf(true, false)) {
+                    strategies.add(Strategy(
+                            "DecisionMaker, ${if (durations) "time left" else "discount"}" +
+                                    if (budgets) ", budgets" else "",
+                            emptyList(), true, durations, budgets))
+                }
+            }
+            // Every order of the tasks as the predefined sequence, with the configured fail-safe
+            for (order in permutations(models.map { it.name })) {
+                strategies.add(configured.copy(name = "Sequence", sequence = order, useDecisionMaker = false))
+            }
+
+            println("Task models:")
+            models.forEach { println("  $it") }
+            println("$matches matches per strategy on ${evaluator.pool.parallelism} threads")
+
+            val start = System.nanoTime()
+            val results = strategies.map { it to evaluator.evaluate(it, matches) }
+            val seconds = (System.nanoTime() - start) / 1e9
+
+            for ((strategy, summary) in results.sortedByDescending { it.second.mean }) {
+                println("%-40s %s".format(strategy, summary))
+            }
+            println("%.1f s, %.0f matches per second".format(seconds, results.size * matches / seconds))
+        }
+
+        private fun loadProperties(file: File) = Properties().apply {
+            FileReader(file).use { load(it) }
+        }
+
+        private fun <T> permutations(items: List<T>): List<List<T>> =
+                if (items.size <= 1) listOf(items)
+                else items.flatMap { item -> permutations(items - item).map { listOf(item) + it } }
+    }
+
+    /**
+     * What a task is expected to do in a match.
+     *
+     * @property priority    Fraction of TOTAL_POINTS earned when the task succeeds
+     * @property reliability Probability that a run succeeds
+     * @property duration    Mean duration of a run in seconds
+     * @property spread      Standard deviation of the duration as a ratio of the mean
+     * @property budget      Longest a run may take in seconds when budgets are used
+     */
+    data class TaskModel(val name: String,
+                         val priority: Double,
+                         val reliability: Double,
+                         val duration: Double,
+                         val spread: Double = DEFAULT_SPREAD,
+                         val budget: Double = duration * 2) {
+
+        // Parameters of the log-normal distribution with the given mean and spread
+        internal val sigma = Math.sqrt(Math.log(1 + spread * spread))
+        internal val mu = Math.log(duration) - sigma * sigma / 2
+
+        override fun toString() = "%s: %.1f points, %.0f%% reliable, %.1f s ± %.0f%%, budget %.1f s".format(
+                name, priority * TOTAL_POINTS, reliability * 100, duration, spread * 100, budget)
+    }
+
+    /**
+     * A way of running the tasks, as AutonomousBase can be configured.
+     *
+     * @property sequence            The predefined task sequence, when not using DecisionMaker
+     * @property useDecisionMaker    Whether DecisionMaker picks every task
+     * @property useDurationPlanning Whether DecisionMaker plans within the time left
+     * @property useBudgets          Whether tasks are cut off at their budget
+     */
+    data class Strategy(val name: String,
+                        val sequence: List<String>,
+                        val useDecisionMaker: Boolean,
+                        val useDurationPlanning: Boolean,
+                        val useBudgets: Boolean) {
+        override fun toString() =
+                if (useDecisionMaker) name
+                else "$name ${sequence.joinToString(",")}" + if (useBudgets) ", budgets" else ""
+    }
+
+    /**
+     * Statistics of the scores of simulated matches.
+     */
+    class Summary(val matches: Long, val mean: Double, private val m2: Double,
+                  val min: Double, val max: Double) {
+
+        val variance: Double get() = if (matches > 1) m2 / (matches - 1) else 0.0
+        val standardDeviation: Double get() = Math.sqrt(variance)
+        /** The standard deviation of the mean itself */
+        val standardError: Double get() = if (matches > 0) Math.sqrt(variance / matches) else 0.0
+
+        /**
+         * Combines the statistics of two disjoint sets of matches.
+         */
+        fun merge(other: Summary): Summary {
+            if (other.matches == 0L) return this
+            if (matches == 0L) return other
+            val total = matches + other.matches
+            val delta = other.mean - mean
+            return Summary(total, mean + delta * other.matches / total,
+                    m2 + other.m2 + delta * delta * matches * other.matches / total,
+                    Math.min(min, other.min), Math.max(max, other.max))
+        }
+
+        override fun toString() = "%6.2f ± %.2f points, variance %7.2f (σ %5.2f), %2.0f to %2.0f".format(
+                mean, standardError, variance, standardDeviation, min, max)
+    }
+
+    private val modelArray = models.toTypedArray()
+    private val indices = models.indices.associateBy { models[it].name }
+
+    init {
+        require(models.size <= TaskPlanner.MAX_TASKS) { "Too many tasks: ${models.size}" }
+    }
+
+    /**
+     * Simulates the given number of matches with the given strategy in parallel.
+     *
+     * @param seed The seed of all random numbers; the same seed gives the same results
+     * @return The statistics of the scores
+     */
+    fun evaluate(strategy: Strategy, matches: Int, seed: Long = 4410): Summary {
+        val sequence = strategy.sequence.map {
+            indices[it.trim()] ?: throw IllegalArgumentException("Unknown task in sequence: $it")
+        }.toIntArray()
+        return pool.invoke(Batch(strategy, sequence, seed, 0, matches))
+    }
+
+    private inner class Batch(private val strategy: Strategy,
+                              private val sequence: IntArray,
+                              private val seed: Long,
+                              private val from: Int,
+                              private val to: Int) : RecursiveTask<Summary>() {
+
+        override fun compute(): Summary {
+            if (to - from > BATCH_SIZE) {
+                val middle = (from + to) ushr 1
+                val left = Batch(strategy, sequence, seed, from, middle).fork()
+                val right = Batch(strategy, sequence, seed, middle, to).compute()
+                return left.join().merge(right)
+            }
+
+            val match = Match(strategy, sequence, Random(seed xor (from * SEED_MIX)))
+            // Welford's algorithm
+            var mean = 0.0
+            var m2 = 0.0
+            var min = Double.POSITIVE_INFINITY
+            var max = Double.NEGATIVE_INFINITY
+            for (i in from until to) {
+                val score = match.play()
+                val delta = score - mean
+                mean += delta / (i - from + 1)
+                m2 += delta * (score - mean)
+                min = Math.min(min, score)
+                max = Math.max(max, score)
+            }
+            return Summary((to - from).toLong(), mean, m2, min, max)
+        }
+    }
+
+    /**
+     * Plays matches on one thread, reusing its planner between them.
+     */
+    private inner class Match(private val strategy: Strategy,
+                              private val sequence: IntArray,
+                              private val random: Random) {
+        private val planner = TaskPlanner(
+                DoubleArray(modelArray.size) { modelArray[it].priority },
+                DoubleArray(modelArray.size) { modelArray[it].reliability },
+                DoubleArray(modelArray.size) { modelArray[it].duration })
+
+        private var clock = 0.0
+        private var remaining = 0
+        private var score = 0.0
+
+        /**
+         * Simulates one match, following AutonomousBase.runTasks.
+         *
+         * @return The points scored
+         */
+        fun play(): Double {
+            clock = 0.0
+            remaining = TaskPlanner.allTasks(modelArray.size)
+            score = 0.0
+
+            var useFailsafe = strategy.useDecisionMaker
+            if (!strategy.useDecisionMaker) {
+                for (task in sequence) {
+                    if (clock >= TaskPlanner.PERIOD_DURATION) break
+                    if (!run(task)) {
+                        useFailsafe = true
+                        break
+                    }
+                }
+            }
+            if (useFailsafe) {
+                while (remaining != 0 && clock < TaskPlanner.PERIOD_DURATION) {
+                    run(if (strategy.useDurationPlanning)
+                        planner.nextWithinTime(remaining, TaskPlanner.PERIOD_DURATION - clock)
+                    else
+                        planner.next(remaining, TaskPlanner.discountAt(clock)))
+                }
+            }
+            return score
+        }
+
+        // Like DecisionMaker.doTask, which does not run a task that is already done
+        private fun run(task: Int): Boolean {
+            if (remaining and (1 shl task) == 0) return false
+            val model = modelArray[task]
+            val timeLeft = TaskPlanner.PERIOD_DURATION - clock
+            val limit = if (strategy.useBudgets) Math.min(model.budget, timeLeft) else timeLeft
+
+            val duration = Math.exp(model.mu + model.sigma * random.nextGaussian())
+            val succeeded = random.nextDouble() < model.reliability
+            if (duration > limit) {
+                clock += limit
+                return false
+            }
+            clock += duration
+            if (succeeded) {
+                score += model.priority * TOTAL_POINTS
+                remaining = remaining and (1 shl task).inv()
+            }
+            return succeeded
+        }
+    }
+}
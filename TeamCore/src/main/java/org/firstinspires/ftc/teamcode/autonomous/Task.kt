@@ -0,0 +1,53 @@
+package org.firstinspires.ftc.teamcode.autonomous
+
+/**
+ * An annotation class that allows tasks (functions) to have metadata, aiding decisions.
+ * It is read at build time (see tasks.gradle): every annotated function of AutonomousBase.Tasks
+ * becomes an entry of TaskCatalog, with its metadata, and of TaskRegistry, which calls it. The
+ * parameters of TaskMetadata must match the parameters of this annotation.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+@Retention(AnnotationRetention.SOURCE)
+@Target(AnnotationTarget.FUNCTION)
+annotation class Task(
+        /**
+         * The magnitude of the benefit as a result of executing this task successfully.
+         * Value should be in range of [0, 1].
+         *
+         * This value is used extensively in the decision-making process as the immediate reward.
+         */
+        val priority: Double,
+
+        /**
+         * The risk for failure in executing this task, both detected and undetected
+         * (regardless of return value)
+         * Value should be in range of [0, 1].
+         *
+         * This value should derive from the outcomes of test sessions to thoroughly optimize the
+         * decisions that the robot makes in Autonomous.
+         *
+         * This value is used extensively in the decision-making process as the probability value.
+         */
+        val reliability: Double,
+
+        /**
+         * The expected duration of this task in seconds.
+         *
+         * Like reliability, this is a guess that is refined by the durations of actual runs
+         * (see TaskStats) when the decision maker plans within the time left.
+         */
+        val duration: Double = 5.0,
+
+        /**
+         * The longest this task may run in seconds, however long it is expected to take.
+         *
+         * When the budget runs out, the task's next wait (a motion, a sleep or a Waiter condition)
+         * cancels it and the robot is put into a safe state, so that a stuck task cannot use up
+         * the time of the tasks after it.
+         */
+        val budget: Double = 10.0
+)
\ No newline at end of file
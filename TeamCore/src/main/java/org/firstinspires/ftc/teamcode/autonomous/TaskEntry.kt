@@ -0,0 +1,45 @@
+package org.firstinspires.ftc.teamcode.autonomous
+
+/**
+ * The metadata of a task, with the same parameters as the Task annotation it is generated from.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+class TaskMetadata(
+        /**
+         * @see Task.priority
+         */
+        val priority: Double,
+        /**
+         * @see Task.reliability
+         */
+        val reliability: Double,
+        /**
+         * @see Task.duration
+         */
+        val duration: Double = 5.0,
+        /**
+         * @see Task.budget
+         */
+        val budget: Double = 10.0)
+
+/**
+ * A task that DecisionMaker can choose and perform on a context of type T.
+ * On the robot, instances are generated into TaskRegistry at build time from the Task annotations
+ * of AutonomousBase.Tasks, so that tasks are found and called without reflection.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @property name     Name of the task function
+ * @property metadata Parameters of the task's annotation
+ * @property perform  Calls the task function directly
+ */
+class TaskEntry<in T>(val name: String,
+                      val metadata: TaskMetadata,
+                      val perform: (T) -> Boolean)
@@ -0,0 +1,191 @@
+package org.firstinspires.ftc.teamcode.autonomous
+
+/**
+ * The search behind `DecisionMaker.nextTask`, over tasks identified by their index.
+ *
+ * A set of tasks is a bitmask (bit `i` set when task `i` is in the set). The value of a set only
+ * depends on the set itself and the depth at which it is reached, and the depth is given by its
+ * size, so the values of all subsets of the remaining tasks are computed once, smallest first,
+ * in a table. One decision takes O(2ⁿ·n) time for n remaining tasks and allocates nothing, except
+ * for the table of durations on the first call of `nextWithinTime`.
+ *
+ * The value of a set of tasks is:
+ *  - `COMPLETION_VALUE` for the empty set
+ *  - priority × reliability × discount^depth for a single task
+ *  - the sum of the values of all sets with one task fewer otherwise
+ *
+ * With expected durations, `nextWithinTime` plans as a knapsack instead: it finds the set of tasks
+ * with the most expected points (priority × reliability) that fits into the time left.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates a planner for tasks with the given priorities, reliabilities and expected
+ *     durations in seconds, by index. The arrays are read on every decision, so their owner may
+ *     update them between decisions.
+ */
+class TaskPlanner(private val priorities: DoubleArray,
+                  private val reliabilities: DoubleArray,
+                  private val durations: DoubleArray = DoubleArray(priorities.size)) {
+
+    companion object {
+        /**
+         * The largest number of tasks supported; the table holds 2ⁿ values.
+         */
+        const val MAX_TASKS = 24
+
+        /**
+         * The value of having nothing left to do.
+         * Ideally it would be Double.MAX_VALUE, but due to suspected issues with overflowing
+         *   while calculating the sum, it has been reduced to 10 million.
+         */
+        const val COMPLETION_VALUE = 10_000_000.0
+
+        /**
+         * @return A mask with the lowest `count` bits set, meaning every task
+         */
+        fun allTasks(count: Int): Int = (1 shl count) - 1
+
+        /**
+         * The duration of the Autonomous period in seconds.
+         */
+        const val PERIOD_DURATION = 30.0
+
+        /**
+         * The discount factor for `next` at the given number of seconds since the Autonomous
+         * period began; linear, equivalent to f(x)=1 - x/30.
+         */
+        fun discountAt(elapsedSeconds: Double): Double = 1.0 - elapsedSeconds / PERIOD_DURATION
+    }
+
+    /**
+     * The number of tasks the planner knows of.
+     */
+    val taskCount = priorities.size
+
+    init {
+        require(reliabilities.size == taskCount && durations.size == taskCount) {
+            "Every task needs a priority, a reliability and a duration"
+        }
+        require(taskCount <= MAX_TASKS) { "$taskCount tasks exceed the limit of $MAX_TASKS" }
+    }
+
+    // Value of each subset of tasks, by mask; only subsets of the remaining tasks are up to date
+    private val values = DoubleArray(1 shl taskCount)
+    private val discountPowers = DoubleArray(taskCount + 1)
+    // Expected duration of each subset of tasks, by mask; only nextWithinTime needs it
+    private var times: DoubleArray? = null
+
+    /**
+     * Picks the task to do next.
+     *
+     * @param remaining The mask of tasks that are not done yet
+     * @param discount  The discount factor applied per level of depth
+     * @return The index of the chosen task, or -1 if there are none remaining
+     */
+    fun next(remaining: Int, discount: Double): Int {
+        if (remaining == 0) return -1
+
+        val remainingCount = Integer.bitCount(remaining)
+        discountPowers[0] = 1.0
+        for (i in 1..taskCount) {
+            discountPowers[i] = discountPowers[i - 1] * discount
+        }
+
+        // Every proper subset of the remaining tasks in increasing order, so that each subset comes
+        //   after all of its own subsets
+        var subset = 0
+        while (subset != remaining) {
+            values[subset] = when (Integer.bitCount(subset)) {
+                0 -> COMPLETION_VALUE
+                1 -> {
+                    val task = Integer.numberOfTrailingZeros(subset)
+                    // A set of one task is reached after all but two of the remaining tasks
+                    priorities[task] * reliabilities[task] * discountPowers[remainingCount - 2]
+                }
+                else -> {
+                    var sum = 0.0
+                    var bits = subset
+                    while (bits != 0) {
+                        val lowest = bits and -bits
+                        sum += values[subset xor lowest]
+                        bits = bits xor lowest
+                    }
+                    sum
+                }
+            }
+            subset = (subset - remaining) and remaining
+        }
+
+        // The task after which the remaining tasks are worth the most; the first one on ties
+        var best = -1
+        var bestValue = Double.NEGATIVE_INFINITY
+        var bits = remaining
+        while (bits != 0) {
+            val lowest = bits and -bits
+            val value = values[remaining xor lowest]
+            if (value > bestValue) {
+                bestValue = value
+                best = Integer.numberOfTrailingZeros(lowest)
+            }
+            bits = bits xor lowest
+        }
+        return best
+    }
+
+    /**
+     * Picks the task to do next so that the expected points within the time left are the highest.
+     * Out of the set of tasks with the most expected points whose durations fit into the time left,
+     * the task that earns the most points per second goes first. When no task fits, every
+     * remaining task is considered, in case it finishes early.
+     *
+     * @param remaining The mask of tasks that are not done yet
+     * @param timeLeft  Seconds left in the period
+     * @return The index of the chosen task, or -1 if there are none remaining
+     */
+    fun nextWithinTime(remaining: Int, timeLeft: Double): Int {
+        if (remaining == 0) return -1
+        val times = this.times ?: DoubleArray(1 shl taskCount).also { this.times = it }
+
+        // Expected points and duration of every non-empty subset of the remaining tasks, in
+        //   increasing order, each built from the subset without its lowest task
+        values[0] = 0.0
+        times[0] = 0.0
+        var bestSubset = 0
+        var bestPoints = 0.0
+        var subset = remaining and -remaining
+        while (true) {
+            val lowest = subset and -subset
+            val task = Integer.numberOfTrailingZeros(lowest)
+            val rest = subset xor lowest
+            values[subset] = values[rest] + priorities[task] * reliabilities[task]
+            times[subset] = times[rest] + durations[task]
+            if (times[subset] <= timeLeft && values[subset] > bestPoints) {
+                bestPoints = values[subset]
+                bestSubset = subset
+            }
+            if (subset == remaining) break
+            subset = (subset - remaining) and remaining
+        }
+
+        // The most points per second goes first; the first one on ties
+        val candidates = if (bestSubset != 0) bestSubset else remaining
+        var best = -1
+        var bestRate = Double.NEGATIVE_INFINITY
+        var bits = candidates
+        while (bits != 0) {
+            val lowest = bits and -bits
+            val task = Integer.numberOfTrailingZeros(lowest)
+            val points = priorities[task] * reliabilities[task]
+            val rate = if (durations[task] > 0.0) points / durations[task] else Double.POSITIVE_INFINITY
+            if (rate > bestRate) {
+                bestRate = rate
+                best = task
+            }
+            bits = bits xor lowest
+        }
+        return best
+    }
+}
@@ -0,0 +1,135 @@
+package org.firstinspires.ftc.teamcode.autonomous
+
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+
+/**
+ * How each task has performed across matches: how often it ran, how often it succeeded and how
+ * long it took. Kept in a small binary file that is rewritten after every run, so that the numbers
+ * survive restarts of the robot controller.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Loads the statistics from the given file, or starts empty if it cannot be read
+ */
+class TaskStats(private val file: File) {
+
+    private companion object {
+        // Identifies the file format; bump when it changes
+        const val FORMAT = 0x54534B01
+    }
+
+    /**
+     * The statistics of one task.
+     */
+    class Record {
+        var runs = 0
+            internal set
+        var successes = 0
+            internal set
+        /** Total duration of all runs in seconds */
+        var totalSeconds = 0.0
+            internal set
+
+        /**
+         * Blends the observed success rate with a prior guess that counts as the given number of runs.
+         */
+        fun reliability(prior: Double, priorWeight: Double): Double =
+                (successes + prior * priorWeight) / (runs + priorWeight)
+
+        /**
+         * Blends the observed mean duration with a prior guess that counts as the given number of runs.
+         */
+        fun duration(prior: Double, priorWeight: Double): Double =
+                (totalSeconds + prior * priorWeight) / (runs + priorWeight)
+
+        override fun toString() = "$successes/$runs in ${"%.1f".format(totalSeconds)} s"
+    }
+
+    private val records = LinkedHashMap<String, Record>()
+
+    /**
+     * Whether statistics were loaded from the file, as opposed to starting empty.
+     */
+    val isLoaded: Boolean
+
+    init {
+        isLoaded = try {
+            load()
+            true
+        } catch (exc: IOException) {
+            records.clear()
+            false
+        }
+    }
+
+    /**
+     * @return The statistics of the task with the given name, which are empty if it never ran
+     */
+    operator fun get(name: String): Record = records.getOrPut(name) { Record() }
+
+    /**
+     * Records a run of a task and saves all statistics.
+     *
+     * @param name      Name of the task
+     * @param seconds   How long the run took
+     * @param succeeded Whether the task succeeded
+     * @return Whether the statistics could be saved
+     */
+    fun record(name: String, seconds: Double, succeeded: Boolean): Boolean {
+        with(get(name)) {
+            runs++
+            if (succeeded) successes++
+            totalSeconds += seconds
+        }
+        return try {
+            save()
+            true
+        } catch (exc: IOException) {
+            false
+        }
+    }
+
+    private fun load() {
+        if (!file.exists()) return
+        DataInputStream(BufferedInputStream(FileInputStream(file))).use { input ->
+            if (input.readInt() != FORMAT) throw IOException("Unknown format of $file")
+            repeat(input.readInt()) {
+                val record = get(input.readUTF())
+                record.runs = input.readInt()
+                record.successes = input.readInt()
+                record.totalSeconds = input.readDouble()
+            }
+        }
+    }
+
+    // Writes a temporary file first, so that a crash while saving cannot corrupt the statistics
+    private fun save() {
+        file.parentFile?.mkdirs()
+        val temporary = File(file.path + ".tmp")
+        DataOutputStream(BufferedOutputStream(FileOutputStream(temporary))).use { output ->
+            output.writeInt(FORMAT)
+            output.writeInt(records.size)
+            for ((name, record) in records) {
+                output.writeUTF(name)
+                output.writeInt(record.runs)
+                output.writeInt(record.successes)
+                output.writeDouble(record.totalSeconds)
+            }
+        }
+        if (!temporary.renameTo(file)) {
+            throw IOException("Cannot replace $file")
+        }
+    }
+
+    override fun toString() = records.entries.joinToString { "${it.key}: ${it.value}" }
+}
@@ -1,7 +1,5 @@
 package org.firstinspires.ftc.teamcode.config
 
-import android.util.Log
-import android.util.NoSuchPropertyException
 import java.io.File
 import java.io.FileNotFoundException
 import java.io.FileReader
@@ -18,8 +16,15 @@ import java.util.*
  */
 class ConfigFile(val filename: String) {
     companion object {
+        /**
+         * The system property that replaces CONFIG_PATH when set, such as when replaying a recorded
+         * run on a workstation.
+         */
+        const val CONFIG_PATH_PROPERTY = "teamcode.config"
+
         // The location of configuration files
-        const val CONFIG_PATH = "/storage/self/primary/FIRST/config"
+        @JvmField val CONFIG_PATH: String =
+                System.getProperty(CONFIG_PATH_PROPERTY) ?: "/storage/self/primary/FIRST/config"
     }
 
     val properties = Properties()
@@ -34,13 +39,11 @@ class ConfigFile(val filename: String) {
 
             // Hardware is not initialized at this point.
         } catch (ferrno: FileNotFoundException) {
-            Log.e("ConfigFile error!", "Internal storage file $filename not found")
-            throw ferrno
+            // Thrown without logging, as android.util.Log is not available off the robot
+            throw FileNotFoundException("Internal storage file $filename not found")
 
         } catch (io: IOException) {
-            Log.e("ConfigFile error!",
-                    "Internal storage file $filename cannot be accessed (${io.message}")
-            throw io
+            throw IOException("Internal storage file $filename cannot be accessed (${io.message})", io)
         }
     }
 
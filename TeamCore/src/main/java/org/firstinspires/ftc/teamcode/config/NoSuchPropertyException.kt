@@ -0,0 +1,14 @@
+package org.firstinspires.ftc.teamcode.config
+
+/**
+ * Thrown when a ConfigFile does not contain a requested key.
+ *
+ * Takes the place of `android.util.NoSuchPropertyException`, so that configuration can be read
+ * off the robot.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+class NoSuchPropertyException(message: String) : RuntimeException(message)
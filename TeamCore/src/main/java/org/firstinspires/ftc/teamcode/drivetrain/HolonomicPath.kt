@@ -0,0 +1,104 @@
+package org.firstinspires.ftc.teamcode.drivetrain
+
+import org.locationtech.jts.algorithm.Angle
+
+/**
+ * A straight-line movement with a simultaneous, evenly spread change of heading, expressed as the
+ * travel of each wheel. Plain moves and turns are the special cases without rotation or without
+ * movement.
+ *
+ * Progress along the path goes from 0 to 1. At progress `s`, the robot has moved `vector * s` in the
+ * frame of its starting orientation and turned `radians * s`. Because the wheels measure movement in
+ * the robot's own frame, which rotates along the way, the movement is integrated in closed form:
+ *
+ *     travel(s) = ∫₀ˢ R(-radians · u) · vector du
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates the path for the given movement and turn
+ * @param x               X component of the movement in the robot's starting frame, inches
+ * @param y               Y component of the movement in the robot's starting frame, inches
+ * @param radians         Counter-clockwise change of heading over the whole path
+ * @param inchesPerRadian Distance each side of the drivetrain travels per radian of turning
+ */
+class HolonomicPath(private val x: Double,
+                    private val y: Double,
+                    private val radians: Double,
+                    private val inchesPerRadian: Double) {
+
+    companion object {
+        /**
+         * Reduces a turn to less than a whole circle, keeping its direction; whole numbers of
+         * circles become 0.
+         *
+         * @param radians Counter-clockwise turn, any magnitude
+         * @return The equivalent turn, (-2π, 2π)
+         */
+        fun normalizeTurn(radians: Double): Double =
+                Angle.normalizePositive(Math.abs(radians)) * (if (radians < 0.0) -1 else 1)
+    }
+
+    private val isTurning = Math.abs(radians) > 1e-9
+
+    /**
+     * An upper bound on the speed of any wheel per unit of progress, in inches.
+     * Following a profile over this distance keeps every wheel within the profile's velocity limit.
+     */
+    val length: Double = if (isTurning)
+        Math.hypot(x, y) + Math.abs(radians) * inchesPerRadian
+    else
+        Math.max(Math.abs(MecanumKinematics.rotatedX(x, y)), Math.abs(MecanumKinematics.rotatedY(x, y)))
+
+    /**
+     * Whether the path goes nowhere, so that there is no progress to make along it.
+     * A profile over such a path has zero distance, which progress cannot be measured against.
+     */
+    val isEmpty: Boolean get() = length == 0.0
+
+    /**
+     * Calculates how far each wheel has travelled at the given progress.
+     *
+     * @param progress Progress along the path, [0, 1]
+     * @param out      The array to write the travel in inches into, by `MotorPtr.ordinal`
+     */
+    fun travelAt(progress: Double, out: DoubleArray) {
+        // Integrals of cos(radians · u) and sin(radians · u) from 0 to progress
+        val cosIntegral: Double
+        val sinIntegral: Double
+        if (isTurning) {
+            cosIntegral = Math.sin(radians * progress) / radians
+            sinIntegral = (1 - Math.cos(radians * progress)) / radians
+        } else {
+            cosIntegral = progress
+            sinIntegral = 0.0
+        }
+        assign(x * cosIntegral + y * sinIntegral, -x * sinIntegral + y * cosIntegral,
+                radians * progress * inchesPerRadian, out)
+    }
+
+    /**
+     * Calculates the rate at which each wheel travels at the given progress.
+     *
+     * @param progress Progress along the path, [0, 1]
+     * @param out      The array to write the inches per unit of progress into, by `MotorPtr.ordinal`
+     */
+    fun rateAt(progress: Double, out: DoubleArray) {
+        val cos = Math.cos(radians * progress)
+        val sin = Math.sin(radians * progress)
+        assign(x * cos + y * sin, -x * sin + y * cos, radians * inchesPerRadian, out)
+    }
+
+    // Combines movement in the robot's frame with turning: the right side moves forward when
+    //   turning counter-clockwise
+    private fun assign(robotX: Double, robotY: Double, spin: Double, out: DoubleArray) {
+        MecanumKinematics.relativeTargets(robotX, robotY, out)
+        for (ptr in MecanumKinematics.MOTORS) {
+            out[ptr.ordinal] += if (ptr.isLeft) -spin else spin
+        }
+    }
+
+    override fun toString() = "[HolonomicPath ($x, $y) ${Math.toDegrees(radians)}° L=$length]"
+}
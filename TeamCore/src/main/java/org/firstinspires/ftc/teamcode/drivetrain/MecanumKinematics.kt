@@ -0,0 +1,185 @@
+package org.firstinspires.ftc.teamcode.drivetrain
+
+/**
+ * Primitive mecanum kinematics used by the drivetrain.
+ * Every result is written into a caller-owned `DoubleArray` indexed by `MotorPtr.ordinal`,
+ * so none of these functions create objects. This keeps the TeleOp loop free of garbage.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+object MecanumKinematics {
+
+    /*
+        # A DISCOVERY ABOUT MECANUM DIRECTIONS
+        (0, 1) -> (1, 1) x+1 FWD
+        (1, 1) -> (1, 0) y-1 RIGHT-FWD
+        (1, 0) -> (1, -1) y-1 RIGHT
+        (1, -1) -> (0, -1) x-1 RIGHT-BWD
+        (0, -1) -> (-1, -1) x-1 BWD
+        (-1, -1) -> (-1, 0) y+1 LEFT-BWD
+        (-1, 0) -> (-1, 1) y+1 LEFT
+        (-1, 1) -> (0, 1) x+1 LEFT-FWD
+
+        Conclusion: a 45-degree clockwise rotation will convert an input vector to a vector where
+          the x value is the relative target position for the RIGHT pair (FL, RR) and the y value
+          is the <...> for the LEFT pair (FR, RL).
+
+        Power calculation:
+         - Rotate vector 45 deg
+         - Scale vector to have absolute value of at least one component be 1 ((-1, -0.4), (0.3, 1))
+         - Multiply vector by given power value
+         - Assign components to diagonal pairs
+
+        Target position calculation:
+         - Rotate vector 45 deg
+         - Convert both components from inches to revolutions, then to ticks
+         - Assign converted ticks to diagonal pairs
+
+        Duration calculation:
+         - Rotate vector 45 deg
+         - Convert both components from inches to milliseconds, then divide both by power value
+         - Sleep for converted milliseconds (then stop motors)
+     */
+
+    /**
+     * The number of motors in the drivetrain, which is also the required size of output arrays.
+     */
+    const val MOTOR_COUNT = 4
+
+    // Indices of each motor in output arrays
+    val FRONT_LEFT = MotorPtr.FRONT_LEFT.ordinal
+    val FRONT_RIGHT = MotorPtr.FRONT_RIGHT.ordinal
+    val REAR_LEFT = MotorPtr.REAR_LEFT.ordinal
+    val REAR_RIGHT = MotorPtr.REAR_RIGHT.ordinal
+
+    /**
+     * All motor pointers, cached because `MotorPtr.values()` clones its array on every call.
+     */
+    val MOTORS: Array<MotorPtr> = MotorPtr.values()
+
+    // Precomputed 315-degree (45 degrees clockwise) rotation
+    private val ROTATION_COS = Math.cos(Math.toRadians(315.0))
+    private val ROTATION_SIN = Math.sin(Math.toRadians(315.0))
+
+    /**
+     * @return The x component of the given vector after being rotated 45 degrees clockwise,
+     *     which belongs to the RIGHT diagonal pair (FL, RR)
+     */
+    fun rotatedX(x: Double, y: Double): Double = x * ROTATION_COS - y * ROTATION_SIN
+
+    /**
+     * @return The y component of the given vector after being rotated 45 degrees clockwise,
+     *     which belongs to the LEFT diagonal pair (FR, RL)
+     */
+    fun rotatedY(x: Double, y: Double): Double = x * ROTATION_SIN + y * ROTATION_COS
+
+    /**
+     * @return The x component of a vector in the robot's frame, given the components of its
+     *     45-degree clockwise rotation. Inverse of `rotatedX` and `rotatedY`.
+     */
+    fun unrotatedX(right: Double, left: Double): Double = right * ROTATION_COS + left * ROTATION_SIN
+
+    /**
+     * @return The y component of a vector in the robot's frame, given the components of its
+     *     45-degree clockwise rotation. Inverse of `rotatedX` and `rotatedY`.
+     */
+    fun unrotatedY(right: Double, left: Double): Double = -right * ROTATION_SIN + left * ROTATION_COS
+
+    /**
+     * Assigns the given values to the two diagonal pairs of motors.
+     *
+     * @param right Value of the RIGHT pair (FL, RR)
+     * @param left  Value of the LEFT pair (FR, RL)
+     * @param out   The array to write into
+     */
+    fun assignPairs(right: Double, left: Double, out: DoubleArray) {
+        out[FRONT_LEFT] = right
+        out[REAR_RIGHT] = right
+        out[FRONT_RIGHT] = left
+        out[REAR_LEFT] = left
+    }
+
+    /**
+     * Calculates the power of each motor for moving in the direction of an arbitrary vector.
+     * The vector is scaled so that the absolute value of its larger component is 1.
+     *
+     * @param x     X component of the direction of movement
+     * @param y     Y component of the direction of movement
+     * @param power Power multiplier, (0, 1]
+     * @param out   The array to write the motor powers into
+     */
+    fun movementPowers(x: Double, y: Double, power: Double, out: DoubleArray) {
+        var right = rotatedX(x, y)
+        var left = rotatedY(x, y)
+
+        if (right != 0.0 || left != 0.0) {
+            val scale = Math.max(Math.abs(right), Math.abs(left))
+            right /= scale
+            left /= scale
+        }
+
+        assignPairs(right * power, left * power, out)
+    }
+
+    /**
+     * Adds turning powers to the given motor powers.
+     * Positive power means clockwise turning.
+     *
+     * @param power Turning power, [-1, 1]
+     * @param out   The motor powers to adjust
+     */
+    fun addTurnPowers(power: Double, out: DoubleArray) {
+        out[FRONT_LEFT] += power
+        out[REAR_LEFT] += power
+        out[FRONT_RIGHT] -= power
+        out[REAR_RIGHT] -= power
+    }
+
+    /**
+     * Calculates the power of each motor for moving in the direction of an arbitrary vector while
+     * turning, scaled into [-1, 1] if needed. This is all of `IDrivetrain.actuate` but the writes
+     * to the motors.
+     *
+     * @param x         X component of the direction of movement
+     * @param y         Y component of the direction of movement
+     * @param power     Power multiplier, (0, 1]
+     * @param turnPower Turning power, positive for clockwise, [-1, 1]
+     * @param out       The array to write the motor powers into
+     */
+    fun actuationPowers(x: Double, y: Double, power: Double, turnPower: Double, out: DoubleArray) {
+        movementPowers(x, y, power, out)
+        addTurnPowers(turnPower, out)
+        clipToUnit(out)
+    }
+
+    /**
+     * Converts a direction in which the caller wishes to travel to each motor's desired relative
+     * target position in inches.
+     *
+     * @param x   X component of a vector from the robot to the target position
+     * @param y   Y component of a vector from the robot to the target position
+     * @param out The array to write the relative positions into
+     */
+    fun relativeTargets(x: Double, y: Double, out: DoubleArray) =
+            assignPairs(rotatedX(x, y), rotatedY(x, y), out)
+
+    /**
+     * Scales the given motor powers proportionally into [-1, 1] if any of them exceeds that range.
+     *
+     * @param powers The motor powers to scale
+     */
+    fun clipToUnit(powers: DoubleArray) {
+        var scale = 0.0
+        for (power in powers) {
+            scale = Math.max(scale, Math.abs(power))
+        }
+        if (scale > 1.0) {
+            for (i in powers.indices) {
+                powers[i] /= scale
+            }
+        }
+    }
+}
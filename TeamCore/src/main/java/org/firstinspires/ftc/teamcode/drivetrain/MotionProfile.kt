@@ -0,0 +1,186 @@
+package org.firstinspires.ftc.teamcode.drivetrain
+
+/**
+ * A time-parameterized motion profile that moves a given distance from rest to rest while respecting
+ * limits on velocity, acceleration and jerk.
+ *
+ * With a jerk limit, the profile is an S-curve of seven segments:
+ *
+ *     jerk  +J   0  -J   0  -J   0  +J
+ *          ├───┼───┼───┼───┼───┼───┼───┤
+ *           ramp up   cruise   ramp down
+ *
+ * Without a jerk limit (maxJerk of 0), the jerk segments have no duration and the profile is
+ * trapezoidal. Segments are dropped when the distance is too short to reach the limits.
+ *
+ * Units are up to the caller (inches and seconds in the drivetrain).
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Generates the profile for the given distance and limits
+ */
+class MotionProfile(val distance: Double,
+                    maxVelocity: Double,
+                    maxAcceleration: Double,
+                    maxJerk: Double) {
+
+    /**
+     * A point of the setpoint stream. Reused between samples to avoid allocation.
+     */
+    class Setpoint {
+        var time = 0.0
+        var position = 0.0
+        var velocity = 0.0
+        var acceleration = 0.0
+
+        override fun toString() = "t=$time p=$position v=$velocity a=$acceleration"
+    }
+
+    private companion object {
+        const val SEGMENTS = 7
+        const val BISECTION_STEPS = 60
+    }
+
+    private val isJerkLimited = maxJerk > 0.0
+
+    // Start time, jerk, and initial state of each segment
+    private val startTimes = DoubleArray(SEGMENTS + 1)
+    private val jerks = DoubleArray(SEGMENTS)
+    private val startAccelerations = DoubleArray(SEGMENTS)
+    private val startVelocities = DoubleArray(SEGMENTS)
+    private val startPositions = DoubleArray(SEGMENTS)
+
+    /**
+     * The velocity reached while cruising, which may be below the limit for short distances.
+     */
+    val cruiseVelocity: Double
+
+    /**
+     * The duration of the whole profile.
+     */
+    val duration: Double get() = startTimes[SEGMENTS]
+
+    init {
+        require(distance >= 0.0) { "distance ($distance) cannot be negative" }
+        require(maxVelocity > 0.0 && maxAcceleration > 0.0) { "limits must be positive" }
+
+        // Time spent ramping up to the given velocity: returns (jerk time, constant accel time)
+        fun rampTimes(velocity: Double): Pair<Double, Double> = when {
+            !isJerkLimited -> 0.0 to velocity / maxAcceleration
+            velocity * maxJerk < maxAcceleration * maxAcceleration ->
+                Math.sqrt(velocity / maxJerk) to 0.0
+            else -> (maxAcceleration / maxJerk) to (velocity / maxAcceleration - maxAcceleration / maxJerk)
+        }
+
+        // Ramping up and down (symmetric) at an average of half the velocity
+        fun rampDistance(velocity: Double): Double {
+            val (jerkTime, accelTime) = rampTimes(velocity)
+            return velocity * (2 * jerkTime + accelTime)
+        }
+
+        // Lower the velocity until ramping up and down fits into the distance
+        var velocity = maxVelocity
+        if (rampDistance(velocity) > distance) {
+            var low = 0.0
+            var high = maxVelocity
+            repeat(BISECTION_STEPS) {
+                val mid = (low + high) / 2
+                if (rampDistance(mid) > distance) high = mid else low = mid
+            }
+            velocity = low
+        }
+        cruiseVelocity = velocity
+
+        val (jerkTime, accelTime) = rampTimes(velocity)
+        val peakAcceleration = if (isJerkLimited) maxJerk * jerkTime else maxAcceleration
+        val cruiseTime = if (velocity > 0.0) (distance - rampDistance(velocity)) / velocity else 0.0
+        val jerk = if (isJerkLimited) maxJerk else 0.0
+
+        val durations = doubleArrayOf(
+                jerkTime, accelTime, jerkTime, Math.max(cruiseTime, 0.0), jerkTime, accelTime, jerkTime)
+        val segmentJerks = doubleArrayOf(jerk, 0.0, -jerk, 0.0, -jerk, 0.0, jerk)
+        val segmentAccelerations = doubleArrayOf(
+                0.0, peakAcceleration, peakAcceleration, 0.0, 0.0, -peakAcceleration, -peakAcceleration)
+
+        // Integrate the state across segments
+        var position = 0.0
+        var speed = 0.0
+        for (i in 0 until SEGMENTS) {
+            val dt = durations[i]
+            val a = segmentAccelerations[i]
+            val j = segmentJerks[i]
+
+            startTimes[i + 1] = startTimes[i] + dt
+            jerks[i] = j
+            startAccelerations[i] = a
+            startVelocities[i] = speed
+            startPositions[i] = position
+
+            position += speed * dt + a * dt * dt / 2 + j * dt * dt * dt / 6
+            speed += a * dt + j * dt * dt / 2
+        }
+    }
+
+    /**
+     * Samples the profile at the given time since its start.
+     * Times before the start or after the end are clamped.
+     *
+     * @param time  Time since the start of the profile
+     * @param into  The setpoint to write into
+     * @return The setpoint written into
+     */
+    fun sample(time: Double, into: Setpoint): Setpoint {
+        into.time = time
+        if (time >= duration) {
+            into.position = distance
+            into.velocity = 0.0
+            into.acceleration = 0.0
+            return into
+        }
+
+        val t = Math.max(time, 0.0)
+        var i = 0
+        while (i < SEGMENTS - 1 && t >= startTimes[i + 1]) i++
+
+        val dt = t - startTimes[i]
+        val a = startAccelerations[i]
+        val j = jerks[i]
+        into.acceleration = a + j * dt
+        into.velocity = startVelocities[i] + a * dt + j * dt * dt / 2
+        into.position = startPositions[i] + startVelocities[i] * dt + a * dt * dt / 2 + j * dt * dt * dt / 6
+        return into
+    }
+
+    override fun toString() = "[MotionProfile d=$distance v=$cruiseVelocity T=$duration]"
+
+    /**
+     * Generates profiles with fixed limits, and keeps them so that repeated moves of the same
+     * distance do not generate them again.
+     *
+     * @constructor Creates a cache for profiles with the given limits
+     */
+    class Cache(private val maxVelocity: Double,
+                private val maxAcceleration: Double,
+                private val maxJerk: Double) {
+
+        // Keyed by distance and velocity scale in thousandths
+        private val profiles = HashMap<Pair<Long, Long>, MotionProfile>()
+
+        /**
+         * Gets the profile for the given distance.
+         *
+         * @param distance      The distance to move
+         * @param velocityScale Multiplier of the velocity limit, (0, 1]
+         * @return A cached or newly generated profile
+         */
+        fun get(distance: Double, velocityScale: Double = 1.0): MotionProfile =
+                profiles.getOrPut(Math.round(distance * 1000) to Math.round(velocityScale * 1000)) {
+                    MotionProfile(distance, maxVelocity * velocityScale, maxAcceleration, maxJerk)
+                }
+
+        val size: Int get() = profiles.size
+    }
+}
@@ -0,0 +1,18 @@
+package org.firstinspires.ftc.teamcode.drivetrain
+
+/**
+ * This enum contains values that point to each motor in the drivetrain.
+ * This is useful for directly sending commands to the individual motors.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+enum class MotorPtr(var isFront: Boolean, var isLeft: Boolean) {
+    FRONT_LEFT(true, true), FRONT_RIGHT(true, false),
+    //       │              │
+    //       ├─── ROBOT! ───┤
+    //       │              │
+    REAR_LEFT(false, true), REAR_RIGHT(false, false)
+}
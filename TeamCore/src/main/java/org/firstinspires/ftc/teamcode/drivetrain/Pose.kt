@@ -0,0 +1,66 @@
+package org.firstinspires.ftc.teamcode.drivetrain
+
+import org.locationtech.jts.algorithm.Angle
+import org.locationtech.jts.math.Vector2D
+
+/**
+ * The position and orientation of the robot on the field.
+ *
+ * The field frame is the robot's frame at its starting position: the robot starts at the origin
+ * facing positive y, with positive x on its right (see "A WORD ON DIRECTIONS" in IDrivetrain).
+ * The heading is the counter-clockwise rotation from the starting orientation in radians, which is
+ * the same sign convention as `IDrivetrain.turn`.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+data class Pose(val x: Double, val y: Double, val heading: Double) {
+
+    companion object {
+        /**
+         * The starting pose.
+         */
+        val ORIGIN = Pose(0.0, 0.0, 0.0)
+    }
+
+    /**
+     * @return The vector from this pose to the given pose, in the robot's frame at this pose,
+     *     which can be passed to `IDrivetrain.move` directly
+     */
+    fun vectorTo(target: Pose): Vector2D {
+        val dx = target.x - x
+        val dy = target.y - y
+        val cos = Math.cos(heading)
+        val sin = Math.sin(heading)
+        return Vector2D(dx * cos + dy * sin, -dx * sin + dy * cos)
+    }
+
+    /**
+     * @return The turn from this pose to the orientation of the given pose, (-π, π], which can be
+     *     passed to `IDrivetrain.turn` directly
+     */
+    fun turnTo(target: Pose): Double = Angle.normalize(target.heading - heading)
+
+    /**
+     * @return The distance between this pose and the given pose, ignoring orientation
+     */
+    fun distanceTo(target: Pose): Double = Math.hypot(target.x - x, target.y - y)
+
+    /**
+     * @return The pose after moving along the given vector in the robot's frame at this pose
+     */
+    fun moved(vector: Vector2D): Pose {
+        val cos = Math.cos(heading)
+        val sin = Math.sin(heading)
+        return Pose(x + vector.x * cos - vector.y * sin, y + vector.x * sin + vector.y * cos, heading)
+    }
+
+    /**
+     * @return The pose after turning counter-clockwise by the given radians in place
+     */
+    fun turned(radians: Double): Pose = Pose(x, y, Angle.normalize(heading + radians))
+
+    override fun toString() = "(%.2f, %.2f) %.1f°".format(x, y, Math.toDegrees(heading))
+}
@@ -0,0 +1,209 @@
+package org.firstinspires.ftc.teamcode.io
+
+import org.firstinspires.ftc.teamcode.config.ConfigUser
+import org.firstinspires.ftc.teamcode.util.Clock
+
+/**
+ * The shared primitive for blocking until a condition is met.
+ * Instead of spinning on hardware reads as fast as the CPU allows, the condition is polled at a
+ * configured interval that grows while the condition stays false (adaptive backoff).
+ * Every wait ends early when the OpMode is asked to stop or when its optional deadline passes.
+ *
+ * Code can also be run within a time budget (see `withBudget`). Once the budget has run out, the
+ * next wait throws BudgetExpiredException instead of returning, so that code which blocks only
+ * through the waiter is cancelled at its next wait, without having to check for it.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates a waiter that keeps time with the given clock and stops waiting when the
+ *     given lambda returns true
+ */
+class Waiter(
+        /**
+         * The clock that deadlines and sleeps follow, which code paced by this waiter should use too.
+         */
+        val clock: Clock = Clock.REAL,
+        private val isStopRequested: () -> Boolean) {
+
+    // CONFIGURATION
+    class Config : ConfigUser("Hardware/config.properties") {
+        val pollInterval = file.getDouble("WaitPollInterval")
+        val maxPollInterval = file.getDouble("WaitMaxPollInterval")
+        val backoffFactor = file.getDouble("WaitBackoffFactor")
+    }
+
+    private val config = Config()
+
+    companion object {
+        /**
+         * Timeout value meaning that a wait has no deadline.
+         */
+        const val NO_TIMEOUT = -1L
+    }
+
+    /**
+     * How a wait ended.
+     */
+    enum class Outcome {
+        /** The condition was met. */
+        DONE,
+        /** The OpMode was asked to stop, or the thread was interrupted. */
+        STOPPED,
+        /** The deadline passed before the condition was met. */
+        TIMED_OUT,
+        /** The time budget ran out; the wait threw BudgetExpiredException. */
+        EXPIRED
+    }
+
+    /**
+     * Thrown by a wait when the time budget it runs within has run out.
+     *
+     * @property budgetMs The budget that ran out in milliseconds
+     */
+    class BudgetExpiredException(val budgetMs: Long) :
+            RuntimeException("Time budget of $budgetMs ms exceeded")
+
+    /**
+     * The report of a finished wait.
+     *
+     * @property outcome How the wait ended
+     * @property polls How many times the condition was checked
+     * @property elapsedMs How long the wait took in milliseconds
+     */
+    data class Result(val outcome: Outcome, val polls: Int, val elapsedMs: Long) {
+        val isDone: Boolean get() = outcome == Outcome.DONE
+    }
+
+    /**
+     * Called before every poll of a condition, such as to start a new sensor cycle.
+     */
+    var beforePoll: (() -> Unit)? = null
+
+    /**
+     * The report of the most recent wait, or null if nothing has been waited for yet.
+     */
+    var lastResult: Result? = null
+        private set
+
+    // When the innermost budget runs out in `clock.millis()`, and its length
+    private var budgetDeadline = Long.MAX_VALUE
+    private var budgetMs = NO_TIMEOUT
+
+    /**
+     * Whether code is running within a time budget that has run out.
+     */
+    val isBudgetExpired: Boolean get() = clock.millis() >= budgetDeadline
+
+    /**
+     * Milliseconds left in the innermost time budget, or NO_TIMEOUT when not within one.
+     */
+    val budgetLeftMs: Long
+        get() = if (budgetDeadline == Long.MAX_VALUE) NO_TIMEOUT else Math.max(0L, budgetDeadline - clock.millis())
+
+    /**
+     * Runs the given code within a time budget. Budgets nest; an inner budget never extends an
+     * outer one.
+     *
+     * @param budgetMs Length of the budget in milliseconds
+     * @param block    The code to run, which is cancelled at its next wait once the budget runs out
+     * @return The result of the code
+     * @throws BudgetExpiredException If the budget ran out while waiting
+     */
+    fun <T> withBudget(budgetMs: Long, block: () -> T): T {
+        val outerDeadline = budgetDeadline
+        val outerBudget = this.budgetMs
+        val deadline = clock.millis() + budgetMs
+        if (deadline < outerDeadline) {
+            budgetDeadline = deadline
+            this.budgetMs = budgetMs
+        }
+        try {
+            return block()
+        } finally {
+            budgetDeadline = outerDeadline
+            this.budgetMs = outerBudget
+        }
+    }
+
+    /**
+     * Blocks until the given condition is true, the OpMode is asked to stop, or the timeout passes.
+     *
+     * @param timeoutMs Maximum duration of the wait in milliseconds, or NO_TIMEOUT
+     * @param condition The condition to wait for; checked once before any sleep
+     * @return How the wait ended and how many polls it took
+     */
+    fun until(timeoutMs: Long = NO_TIMEOUT, condition: () -> Boolean): Result =
+            poll(timeoutMs, config.pollInterval, config.backoffFactor, config.maxPollInterval, condition)
+
+    /**
+     * Blocks until the given condition is true, the OpMode is asked to stop, or the timeout passes,
+     * checking the condition at a fixed interval without backoff. Meant for conditions that also
+     * do work on each check, such as following a motion profile.
+     *
+     * @param intervalMs Duration between checks in milliseconds
+     * @param timeoutMs  Maximum duration of the wait in milliseconds, or NO_TIMEOUT
+     * @param condition  The condition to wait for; checked once before any sleep
+     * @return How the wait ended and how many polls it took
+     */
+    fun every(intervalMs: Long, timeoutMs: Long = NO_TIMEOUT, condition: () -> Boolean): Result =
+            poll(timeoutMs, intervalMs.toDouble(), 1.0, intervalMs.toDouble(), condition)
+
+    private inline fun poll(timeoutMs: Long, initialInterval: Double, backoffFactor: Double,
+                            maxInterval: Double, condition: () -> Boolean): Result {
+        val start = clock.millis()
+        val timeoutDeadline = if (timeoutMs == NO_TIMEOUT) Long.MAX_VALUE else start + timeoutMs
+        val deadline = Math.min(timeoutDeadline, budgetDeadline)
+        var interval = initialInterval
+        var polls = 0
+
+        val outcome: Outcome
+        while (true) {
+            polls++
+            beforePoll?.invoke()
+            if (condition()) {
+                outcome = Outcome.DONE
+                break
+            }
+            if (isStopRequested()) {
+                outcome = Outcome.STOPPED
+                break
+            }
+            val remaining = deadline - clock.millis()
+            if (remaining <= 0) {
+                outcome = if (deadline < timeoutDeadline) Outcome.EXPIRED else Outcome.TIMED_OUT
+                break
+            }
+            if (!pause(Math.min(Math.max(interval.toLong(), 1L), remaining))) {
+                outcome = Outcome.STOPPED
+                break
+            }
+            interval = Math.min(interval * backoffFactor, maxInterval)
+        }
+
+        val result = Result(outcome, polls, clock.millis() - start)
+        lastResult = result
+        if (outcome == Outcome.EXPIRED) throw BudgetExpiredException(budgetMs)
+        return result
+    }
+
+    /**
+     * Sleeps for the given duration, waking up early if the OpMode is asked to stop.
+     * Unlike `Thread.sleep` and `LinearOpMode.sleep`, the sleep is cut short by a time budget.
+     *
+     * @param durationMs Duration of the sleep in milliseconds
+     * @return The outcome TIMED_OUT when the full duration passed, otherwise STOPPED
+     */
+    fun sleep(durationMs: Long): Outcome = until(durationMs) { false }.outcome
+
+    // Sleeps without throwing; false if interrupted, in which case the flag is restored
+    private fun pause(durationMs: Long): Boolean = try {
+        clock.sleep(durationMs)
+        true
+    } catch (exc: InterruptedException) {
+        Thread.currentThread().interrupt()
+        false
+    }
+}
@@ -0,0 +1,131 @@
+package org.firstinspires.ftc.teamcode.telemetry
+
+/**
+ * Defines the ways in which the other parts of the program can access the telemetry features.
+ * Ideally, no direct access to the "telemetry" field in the OpMode classes should be permitted
+ * in any other part of the program except when initializing ITelemetry.
+ * Structurally similar to logging by storing the history of telemetry messages by default.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+interface ITelemetry {
+
+    /**
+     * A line whose value is produced only when telemetry is sent.
+     *
+     * @see item
+     */
+    interface Item {
+        val caption: String
+
+        /**
+         * Removes the line from telemetry. Registering its caption again adds a new line.
+         */
+        fun remove()
+    }
+
+    /**
+     * Determines whether written data will be cleared in the buffer when flush() is called.
+     * Should be mapped to setAutoClear and isAutoClear in FTC's API.
+     */
+    var autoClear: Boolean
+
+    /**
+     * Determines whether all written data will be flushed automatically, thus cancelling out the
+     * effect of calling flush() itself. Automatic flushes are limited to maxUpdateRate; fatal
+     * messages are flushed immediately.
+     */
+    var autoUpdate: Boolean
+
+    /**
+     * The most automatic flushes per second, or 0 for no limit. Data written in between is sent
+     * with the next write after the interval, or by flushIfDue().
+     */
+    var maxUpdateRate: Double
+
+    /**
+     * The number of writes that did not flush automatically because of maxUpdateRate.
+     */
+    val suppressedUpdates: Long
+
+    /**
+     * When positive, telemetry scrolls instead of growing: `write` and `data` update one pinned
+     * status line per caption in place, while `log`, errors and warnings go to a log that keeps
+     * only this many recent messages. The amount of telemetry then stays the same however long the
+     * OpMode runs. When 0 (the default), every call adds a line.
+     */
+    var logCapacity: Int
+
+    /**
+     * Writes a message to telemetry.
+     * Similar to addData()
+     *
+     * @param caption Caption of the message
+     * @param data Data of the message
+     */
+    fun write(caption: String, data: String)
+
+    /**
+     * Writes an error to telemetry.
+     *
+     * @param info The error message
+     */
+    fun error(info: String)
+
+    /**
+     * Writes a warning to telemetry.
+     *
+     * @param info The warning message
+     */
+    fun warning(info: String)
+
+    /**
+     * Adds a message to the log of recent messages, below all other lines.
+     *
+     * @param message The message
+     */
+    fun log(message: String)
+
+    /**
+     * Writes data to telemetry.
+     *
+     * @param label Name of data
+     * @param data Data
+     */
+    fun data(label: String, data: Any)
+
+    /**
+     * Registers a line whose value is produced by the given supplier, and formatted, only when
+     * telemetry is actually sent. Nothing is evaluated or formatted in between, so this is meant
+     * for values that change in hot loops. The line stays, even when other lines are cleared, until
+     * it is removed. Registering a caption again replaces its supplier and returns the same item.
+     *
+     * @param caption  Caption of the line
+     * @param format   Format of the value (see String.format), or null to use its toString()
+     * @param supplier Produces the value
+     * @return The handle to the line
+     */
+    fun <T> item(caption: String, format: String? = null, supplier: () -> T): Item
+
+    /**
+     * Writes a fatal message to telemetry.
+     * Ideally, the OpMode is expected to end immediately after this method is called.
+     *
+     * @param info Diagnostic info about the fatal error
+     */
+    fun fatal(info: String)
+
+    /**
+     * Flushes all added messages to the screen and clears the buffer.
+     */
+    fun flush()
+
+    /**
+     * Flushes if autoUpdate has data waiting and maxUpdateRate allows an update now.
+     * Should be called regularly, such as while waiting, so that no data stays waiting for long.
+     */
+    fun flushIfDue()
+}
@@ -0,0 +1,174 @@
+package org.firstinspires.ftc.teamcode.telemetry
+
+import org.firstinspires.ftc.teamcode.config.ConfigUser
+import org.firstinspires.ftc.teamcode.util.Clock
+
+/**
+ * A reference implementation of ITelemetry.
+ *
+ * With autoUpdate, messages are not sent as they are written. Telemetry is marked dirty instead,
+ * and sent at most `maxUpdateRate` times per second: by the write that finds the interval passed,
+ * or by `flushIfDue` afterwards. Only fatal messages are sent immediately.
+ *
+ * The log of recent messages is the log of the sink, whose capacity bounds it; status lines are
+ * retained lines whose values are replaced.
+ *
+ * Supplied items are lines with value producers, which the sink only evaluates when it composes
+ * a transmission.
+ *
+ * @author Michael Peng
+ */
+class Telemetry(private val telem: TelemetrySink,
+                private val clock: Clock = Clock.REAL) : ITelemetry {
+
+    // CONFIGURATION
+    class Config : ConfigUser("Hardware/config.properties") {
+        val maxUpdateRate = file.getDouble("TelemetryMaxUpdateRate")
+    }
+
+    override var autoClear: Boolean
+        get() = telem.isAutoClear
+        set(value) {
+            telem.isAutoClear = value
+        }
+
+    override var autoUpdate = false
+
+    override var maxUpdateRate = 0.0
+        set(value) {
+            field = value
+            minIntervalNanos = if (value > 0.0) (1e9 / value).toLong() else 0L
+            // Otherwise the SDK would drop updates that are due by our interval
+            if (value > 0.0) telem.msTransmissionInterval = (1000 / value).toInt()
+        }
+
+    override var suppressedUpdates: Long = 0
+        private set
+
+    override var logCapacity = 0
+        set(value) {
+            require(value >= 0) { "Negative log capacity: $value" }
+            field = value
+            if (value > 0) telem.logCapacity = value
+        }
+
+    private val isScrolling: Boolean get() = logCapacity > 0
+
+    // Pinned status lines by caption (or label for data), when scrolling
+    private val statusLines = HashMap<String, TelemetrySink.Line>()
+    private val dataLines = HashMap<String, TelemetrySink.Line>()
+
+    // Supplied items by caption
+    private val items = HashMap<String, SuppliedItem>()
+
+    private var minIntervalNanos = 0L
+    private var lastFlushNanos = 0L
+    private var isDirty = false
+
+    init {
+        this.telem.addData("Hello World", "Telemetry Initialized!")
+        flush()
+    }
+
+    override fun write(caption: String, data: String) {
+        add(statusLines, caption, data) { caption }
+        changed()
+    }
+
+    override fun error(info: String) {
+        if (isScrolling) this.telem.log("[ERROR] $info") else this.telem.addData("[ERROR]", info)
+        changed()
+    }
+
+    override fun warning(info: String) {
+        if (isScrolling) this.telem.log("[WARN] $info") else this.telem.addData("[WARN]", info)
+        changed()
+    }
+
+    override fun log(message: String) {
+        this.telem.log(message)
+        changed()
+    }
+
+    override fun data(label: String, data: Any) {
+        // The caption is only built when a line is added
+        add(dataLines, label, data) { "DATA: " + label }
+        changed()
+    }
+
+    override fun fatal(info: String) {
+        add(statusLines, "--- FATAL ", " ERROR ---") { "--- FATAL " }
+        add(statusLines, "Error Info", info) { "Error Info" }
+        // The OpMode is likely about to end, so this cannot wait for the next update
+        if (autoUpdate) flush()
+    }
+
+    // Adds a line, or updates the status line of the key when scrolling
+    private inline fun add(lines: HashMap<String, TelemetrySink.Line>, key: String, value: Any,
+                           caption: () -> String) {
+        if (!isScrolling) {
+            this.telem.addData(caption(), value)
+            return
+        }
+        val line = lines[key]
+        if (line != null) {
+            line.setValue(value)
+        } else {
+            lines[key] = this.telem.addRetained(caption(), value)
+        }
+    }
+
+    override fun <T> item(caption: String, format: String?, supplier: () -> T): ITelemetry.Item {
+        val item = items.getOrPut(caption) { SuppliedItem(caption) }
+        item.supplier = supplier
+        item.format = format
+        item.show()
+        changed()
+        return item
+    }
+
+    private inner class SuppliedItem(override val caption: String) : ITelemetry.Item {
+        var supplier: () -> Any? = { null }
+        var format: String? = null
+        private var line: TelemetrySink.Line? = null
+
+        fun show() {
+            if (line == null) {
+                line = telem.addSupplied(caption) { produce() }
+            }
+        }
+
+        // Called by the sink when composing a transmission
+        private fun produce(): Any {
+            val value = supplier()
+            val pattern = format
+            return if (pattern != null) pattern.format(value) else value ?: "null"
+        }
+
+        override fun remove() {
+            line?.let { telem.remove(it) }
+            line = null
+            items.remove(caption)
+        }
+    }
+
+    // Marks telemetry dirty; sends it if autoUpdate is on and the interval has passed
+    private fun changed() {
+        if (!autoUpdate) return
+        isDirty = true
+        if (isDue) flush() else suppressedUpdates++
+    }
+
+    private val isDue: Boolean get() = clock.nanoTime() - lastFlushNanos >= minIntervalNanos
+
+    // Supplied items may have changed at any time, so they are refreshed whenever due
+    override fun flushIfDue() {
+        if ((isDirty || items.isNotEmpty()) && isDue) flush()
+    }
+
+    override fun flush() {
+        this.telem.update()
+        isDirty = false
+        lastFlushNanos = clock.nanoTime()
+    }
+}
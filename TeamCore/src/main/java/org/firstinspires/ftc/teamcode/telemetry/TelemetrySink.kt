@@ -0,0 +1,68 @@
+package org.firstinspires.ftc.teamcode.telemetry
+
+/**
+ * Where Telemetry sends its lines: on the robot, the SDK's telemetry, through FtcTelemetrySink.
+ *
+ * Only the parts of the SDK's telemetry that Telemetry uses are here, so that Telemetry does not
+ * depend on the SDK and its formatting also runs on a workstation JVM.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+interface TelemetrySink {
+
+    /**
+     * A line that stays until it is removed, whose value can be replaced.
+     */
+    interface Line {
+        fun setValue(value: Any)
+    }
+
+    /**
+     * Whether lines that are not retained are cleared after every update.
+     */
+    var isAutoClear: Boolean
+
+    /**
+     * The shortest interval between transmissions in milliseconds.
+     */
+    var msTransmissionInterval: Int
+
+    /**
+     * The number of entries the log keeps.
+     */
+    var logCapacity: Int
+
+    /**
+     * Adds an entry to the log.
+     */
+    fun log(entry: String)
+
+    /**
+     * Adds a line that is cleared by the next update, when auto clear is on.
+     */
+    fun addData(caption: String, value: Any)
+
+    /**
+     * Adds a line that stays until it is removed.
+     */
+    fun addRetained(caption: String, value: Any): Line
+
+    /**
+     * Adds a line that stays until it is removed, whose value is produced whenever a transmission
+     * is composed.
+     */
+    fun addSupplied(caption: String, producer: () -> Any): Line
+
+    /**
+     * Removes a line added by this sink.
+     */
+    fun remove(line: Line)
+
+    /**
+     * Transmits the lines.
+     */
+    fun update()
+}
@@ -0,0 +1,28 @@
+package org.firstinspires.ftc.teamcode.teleop
+
+/**
+ * A class that retains input state and performs a given callback when the state changes.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+class ChangeBasedInputColumn<out T>(private val input: () -> T) {
+    private var previousState = input()
+
+    /**
+     * Calls the given lambda if the input value has changed. Should be called only once during
+     * each loop.
+     */
+    fun onChange(todo: (T, T) -> Unit): T {
+        val newState = input()
+
+        if (newState != previousState) {
+            todo(previousState, newState)
+            previousState = newState
+        }
+
+        return newState
+    }
+}
@@ -1,7 +1,5 @@
 package org.firstinspires.ftc.teamcode.teleop
 
-import com.qualcomm.robotcore.hardware.Gamepad
-
 /**
  * Provides a mechanism that stores the gamepad's state, allowing actions to be performed when a
  * given value of the gamepad *changes*.
@@ -9,6 +7,9 @@ import com.qualcomm.robotcore.hardware.Gamepad
  * IMPORTANT: the `update` method should be called repetitively to trap gamepad changes
  *            responsively.
  *
+ * The gamepad is of type P, which on the robot is the SDK's Gamepad; the listener does not depend
+ * on the SDK, so it also runs on a workstation JVM.
+ *
  * @author Michael Peng
  * For team: 4410 (Lightning)
  *
@@ -16,7 +17,7 @@ import com.qualcomm.robotcore.hardware.Gamepad
  *
  * @constructor Listens for given GamepadProperties of the given Gamepad
  */
-class GamepadListener(val pad: Gamepad, val rules: List<GamepadRule>) {
+class GamepadListener<P>(val pad: P, val rules: List<GamepadRule<P>>) {
 
     /**
      * The state variable containing all necessary values. Each element's index corresponds to the same index in the keySet of this.rules.
@@ -61,14 +62,14 @@ class GamepadListener(val pad: Gamepad, val rules: List<GamepadRule>) {
  *
  * Examples: `{ it.left_bumper }` or `{ it.left_trigger > 0.3 }`
  */
-typealias GamepadProperty = (Gamepad) -> Boolean
+typealias GamepadProperty<P> = (P) -> Boolean
 
 /**
  * Describes what should be done when a GamepadProperty has changed.
  *
  * Examples: `Pair({ it.left_bumper }, { if (it) activateMotor() else deactivateMotor() })
  */
-typealias GamepadRule = Pair<GamepadProperty, Action>
+typealias GamepadRule<P> = Pair<GamepadProperty<P>, Action>
 
 /**
  * Describes actions performed when there is a change in gamepad controls.
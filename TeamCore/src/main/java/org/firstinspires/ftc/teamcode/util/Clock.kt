@@ -0,0 +1,47 @@
+package org.firstinspires.ftc.teamcode.util
+
+/**
+ * The source of time for code whose behavior depends on it, such as waits, timed motions and
+ * telemetry pacing. On the robot this is REAL; a replay of a recorded run substitutes the recorded
+ * time, so that the code makes the same decisions as it did on the robot, and a simulation a
+ * VirtualClock, so that a match runs as fast as it can be computed. Either way, nothing waits for
+ * real time to pass.
+ *
+ * Hardware.init hands its clock to everything it creates; code outside it uses `Hardware.clock`.
+ * Background threads that pace themselves in real time do not use it, and are not started when
+ * the clock is not REAL.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+interface Clock {
+
+    /**
+     * The current time in nanoseconds from an arbitrary origin, like `System.nanoTime()`.
+     */
+    fun nanoTime(): Long
+
+    /**
+     * The current time in milliseconds from the same origin as `nanoTime()`.
+     */
+    fun millis(): Long = nanoTime() / 1000000
+
+    /**
+     * Blocks the calling thread for the given duration, like `Thread.sleep`.
+     *
+     * @throws InterruptedException If the thread is interrupted while sleeping
+     */
+    @Throws(InterruptedException::class)
+    fun sleep(durationMs: Long)
+
+    /**
+     * The system's monotonic clock, sleeping in real time.
+     */
+    object REAL : Clock {
+        override fun nanoTime() = System.nanoTime()
+
+        override fun sleep(durationMs: Long) = Thread.sleep(durationMs)
+    }
+}
@@ -0,0 +1,65 @@
+package org.firstinspires.ftc.teamcode.util
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * A fixed-size group of doubles that one thread publishes and any number of threads read, without
+ * locks and without allocation. Readers always see a consistent group, never a mix of two writes.
+ *
+ * This is a sequence lock: the writer makes the sequence odd while it writes, and a reader retries
+ * if the sequence was odd or changed while it was reading. The writer never waits.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates a slot of the given number of doubles, all 0
+ */
+class DoubleSlot(val size: Int) {
+    private val sequence = AtomicInteger()
+    // The values, followed by the stamp
+    private val values = AtomicLongArray(size + 1)
+
+    /**
+     * The number of times the slot has been published to.
+     */
+    val version: Int get() = sequence.get() ushr 1
+
+    /**
+     * Publishes the given values. Must only be called from one thread.
+     *
+     * @param source     The values to publish, of at least `size` elements
+     * @param multiplier Multiplier applied to every value
+     * @param stamp      Published along with the values, such as the time they were measured
+     */
+    fun publish(source: DoubleArray, multiplier: Double = 1.0, stamp: Long = 0) {
+        sequence.incrementAndGet()
+        for (i in 0 until size) {
+            values.set(i, java.lang.Double.doubleToRawLongBits(source[i] * multiplier))
+        }
+        values.set(size, stamp)
+        sequence.incrementAndGet()
+    }
+
+    /**
+     * Copies the latest published values.
+     *
+     * @param into The array to copy into, of at least `size` elements
+     * @return The stamp published with the values, or 0 if nothing was published yet
+     */
+    fun read(into: DoubleArray): Long {
+        while (true) {
+            val before = sequence.get()
+            if ((before and 1) == 0) {
+                for (i in 0 until size) {
+                    into[i] = java.lang.Double.longBitsToDouble(values.get(i))
+                }
+                val stamp = values.get(size)
+                if (sequence.get() == before) return stamp
+            }
+            Thread.yield()
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.firstinspires.ftc.teamcode.util
+
+import java.util.PriorityQueue
+
+/**
+ * A discrete-event clock: time only passes when it is slept, and jumps from one scheduled event to
+ * the next instead of waiting for it. Events run on the sleeping thread, in the order of their
+ * times, with the clock showing their time; events scheduled for the same time run in the order
+ * they were scheduled. Code that sleeps through this clock runs as fast as it can be computed,
+ * and the same way every time.
+ *
+ * Not thread-safe; meant for a single thread that does all the sleeping, like the OpMode thread of
+ * a simulation. Real-time threads cannot follow it, so none should be running.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ *
+ * @constructor Creates a clock showing the given time, without events
+ */
+class VirtualClock(startNanos: Long = 0) : Clock {
+
+    // Repeats every periodNanos if positive
+    private class Event(var timeNanos: Long, var sequence: Long, val periodNanos: Long, val action: () -> Unit)
+
+    private val events = PriorityQueue<Event>(16, compareBy<Event>({ it.timeNanos }, { it.sequence }))
+    private var sequence = 0L
+
+    /**
+     * The current time in nanoseconds.
+     */
+    var nanos: Long = startNanos
+        private set
+
+    override fun nanoTime() = nanos
+
+    /**
+     * Runs the given action once, after the given delay.
+     */
+    fun schedule(delayNanos: Long, action: () -> Unit) {
+        events.add(Event(nanos + delayNanos, sequence++, 0, action))
+    }
+
+    /**
+     * Runs the given action every period, starting one period from now.
+     */
+    fun every(periodNanos: Long, action: () -> Unit) {
+        require(periodNanos > 0) { "The period must be positive" }
+        events.add(Event(nanos + periodNanos, sequence++, periodNanos, action))
+    }
+
+    /**
+     * Runs every event up to the given time, then shows that time. Does nothing if it has passed.
+     */
+    fun advanceTo(timeNanos: Long) {
+        while (true) {
+            val next = events.peek()
+            if (next == null || next.timeNanos > timeNanos) break
+            events.poll()
+            nanos = next.timeNanos
+            next.action()
+            if (next.periodNanos > 0) {
+                next.timeNanos += next.periodNanos
+                next.sequence = sequence++
+                events.add(next)
+            }
+        }
+        if (timeNanos > nanos) nanos = timeNanos
+    }
+
+    /**
+     * Advances the time by the given duration at once, running the events in between.
+     */
+    override fun sleep(durationMs: Long) {
+        if (Thread.interrupted()) throw InterruptedException()
+        advanceTo(nanos + durationMs * 1000000)
+    }
+
+    /**
+     * Drops every scheduled event.
+     */
+    fun clear() {
+        events.clear()
+    }
+}
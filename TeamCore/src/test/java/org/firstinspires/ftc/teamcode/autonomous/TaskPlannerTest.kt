@@ -0,0 +1,91 @@
+package org.firstinspires.ftc.teamcode.autonomous
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.Random
+
+/**
+ * TaskPlanner decides as the recursive search that DecisionMaker used before it, which evaluated
+ * every ordering of the remaining tasks.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+class TaskPlannerTest {
+
+    private val discount = 0.9
+
+    /**
+     * The recursive search, as in PlannerBenchmark.
+     */
+    private fun recursiveNext(remaining: Int, priorities: DoubleArray, reliabilities: DoubleArray): Int {
+        val tasks = priorities.indices.filter { remaining and (1 shl it) != 0 }.toSet()
+
+        fun value(state: Set<Int>, depth: Int = 0): Double = when (state.size) {
+            0 -> TaskPlanner.COMPLETION_VALUE
+            1 -> priorities[state.first()] * reliabilities[state.first()] * Math.pow(discount, depth.toDouble())
+            else -> state.map { value(state - it, depth + 1) }.sum()
+        }
+
+        var best = -1
+        var bestValue = Double.NEGATIVE_INFINITY
+        for (task in tasks) {
+            val taskValue = value(tasks - task)
+            if (taskValue > bestValue) {
+                best = task
+                bestValue = taskValue
+            }
+        }
+        return best
+    }
+
+    @Test
+    fun decidesAsTheRecursiveSearch() {
+        val random = Random(4410)
+        for (count in 1..6) {
+            repeat(5) {
+                val priorities = DoubleArray(count) { random.nextDouble() * 100 }
+                val reliabilities = DoubleArray(count) { random.nextDouble() }
+                val planner = TaskPlanner(priorities, reliabilities)
+
+                // Every set of remaining tasks, as tasks get done
+                for (remaining in 1..TaskPlanner.allTasks(count)) {
+                    assertEquals("$count tasks, remaining ${Integer.toBinaryString(remaining)}",
+                            recursiveNext(remaining, priorities, reliabilities),
+                            planner.next(remaining, discount))
+                }
+            }
+        }
+    }
+
+    @Test
+    fun decidesForTheTasksOfAutonomousBase() {
+        val priorities = doubleArrayOf(30.0, 10.0, 30.0, 15.0)
+        val reliabilities = doubleArrayOf(0.75, 0.9, 0.7, 0.7)
+        val planner = TaskPlanner(priorities, reliabilities)
+        val all = TaskPlanner.allTasks(priorities.size)
+        assertEquals(recursiveNext(all, priorities, reliabilities), planner.next(all, discount))
+    }
+
+    @Test
+    fun plansWithinTimeAfterDiscountedDecisions() {
+        val priorities = doubleArrayOf(20.0, 30.0)
+        val reliabilities = doubleArrayOf(1.0, 1.0)
+        val planner = TaskPlanner(priorities, reliabilities, doubleArrayOf(10.0, 25.0))
+        val all = TaskPlanner.allTasks(2)
+        assertEquals(recursiveNext(all, priorities, reliabilities), planner.next(all, discount))
+        // Only the first task fits, then the one worth more, then both, most points per second first
+        assertEquals(0, planner.nextWithinTime(all, 12.0))
+        assertEquals(1, planner.nextWithinTime(all, 26.0))
+        assertEquals(0, planner.nextWithinTime(all, 40.0))
+    }
+
+    @Test
+    fun nothingRemainingIsNoTask() {
+        val planner = TaskPlanner(doubleArrayOf(1.0, 2.0), doubleArrayOf(0.5, 0.5))
+        assertEquals(-1, planner.next(0, discount))
+        assertEquals(-1, planner.nextWithinTime(0, 30.0))
+    }
+}
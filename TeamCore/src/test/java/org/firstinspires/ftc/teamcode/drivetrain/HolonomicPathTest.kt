@@ -0,0 +1,51 @@
+package org.firstinspires.ftc.teamcode.drivetrain
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/**
+ * Drivetrain follows a profile along a HolonomicPath only when the path is not empty, since
+ * progress is measured against its length.
+ *
+ * @author Michael Peng
+ * For team: 4410 (Lightning)
+ *
+ * FIRST - Gracious Professionalism
+ */
+class HolonomicPathTest {
+
+    private val inchesPerRadian = 7.5
+
+    private fun turn(radians: Double) =
+            HolonomicPath(0.0, 0.0, HolonomicPath.normalizeTurn(radians), inchesPerRadian)
+
+    @Test
+    fun wholeCirclesAreEmpty() {
+        for (circles in listOf(1, 2, -1, -3)) {
+            val path = turn(circles * 2 * Math.PI)
+            assertTrue("$circles circles", path.isEmpty)
+            assertEquals(0.0, path.length, 0.0)
+        }
+    }
+
+    @Test
+    fun partialTurnsAreNotEmpty() {
+        assertFalse(turn(Math.PI / 2).isEmpty)
+        assertFalse(turn(-5 * Math.PI / 2).isEmpty)
+        assertEquals(Math.PI / 2 * inchesPerRadian, turn(-5 * Math.PI / 2).length, 1e-9)
+    }
+
+    @Test
+    fun normalizedTurnsKeepTheirDirection() {
+        assertEquals(Math.PI / 2, HolonomicPath.normalizeTurn(5 * Math.PI / 2), 1e-9)
+        assertEquals(-Math.PI / 2, HolonomicPath.normalizeTurn(-5 * Math.PI / 2), 1e-9)
+    }
+
+    @Test
+    fun movesAreNotEmpty() {
+        assertFalse(HolonomicPath(0.0, 12.0, 0.0, inchesPerRadian).isEmpty)
+        assertFalse(HolonomicPath(3.0, 4.0, Math.PI, inchesPerRadian).isEmpty)
+    }
+}